@@ -0,0 +1,247 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Conformance check for the binary protocol ("Binary protocol" in the README), run on a
+ * laptop (not part of the robot app).
+ *
+ * Like checking a key against the lock's drawing and then trying it in the door: a known
+ * snapshot is encoded and compared byte for byte with the spec, then a loopback client
+ * negotiates binary mode with a real TelemetryServer and decodes what it is sent, while a
+ * text client on the same server must still get plain DATA lines.
+ *
+ * java ...telelib.BinaryProtocolCheck [port]   (exit status 1 when a check fails)
+ */
+public final class BinaryProtocolCheck {
+    private static final int DEFAULT_PORT = 5750;
+    // How long a client waits for the next frame or line before the check fails.
+    private static final int READ_TIMEOUT_MS = 3000;
+
+    /*
+     * DATA frame for sample() stamped seq 5, t_us 300, straight from the spec.
+     */
+    private static final int[] EXPECTED_DATA = {
+        0x00, 0x00, 0x00, 0x1E, // length: type + 29 payload bytes
+        0x44, // 'D'
+        0x05, // seq 5
+        0xAC, 0x02, // t_us 300
+        0x05, // 5 entries
+        0x00, 0x01, 0xC0, 0x0A, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, // a: double -3.25
+        0x01, 0x02, 0x03, // b: zigzag long -2
+        0x02, 0x03, 0x03, 0x68, 0xC3, 0xA9, // s: 3 UTF-8 bytes "h\u00e9"
+        0x03, 0x04, 0xF6, 0x01, // q: 123 steps of 0.01, zigzag 246
+        0x04, 0x00 // e: no value
+    };
+    private static final int[] EXPECTED_OK = {0x00, 0x00, 0x00, 0x03, 0x54, 'O', 'K'};
+
+    private static int checks;
+    private static int failures;
+
+    private BinaryProtocolCheck() {}
+
+    /**
+     * Run the encoder and loopback checks and print the totals.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        checkEncoder();
+        checkLoopback(port);
+        System.out.println("checks=" + checks + " failures=" + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void checkEncoder() {
+        FieldCatalog catalog = catalog();
+        double[] quanta = new double[catalog.size()];
+        for (int i = 0; i < quanta.length; i++) {
+            quanta[i] = catalog.get(i).quantum;
+        }
+        TelemetrySnapshot snapshot = sample(catalog.size());
+        snapshot.stamp(5, 300);
+        FrameBuffer frame = new FrameBuffer(64);
+        BinaryFrames.writeData(frame, snapshot, new int[] {0, 1, 2, 3, 4}, quanta);
+        expectBytes("DATA frame", EXPECTED_DATA, frame);
+
+        frame.clear();
+        BinaryFrames.writeData(frame, snapshot, new int[] {-1, 1, -1, -1, -1}, quanta);
+        int[] single = {0x00, 0x00, 0x00, 0x08, 0x44, 0x05, 0xAC, 0x02, 0x01, 0x01, 0x02, 0x03};
+        expectBytes("DATA frame with left-out fields", single, frame);
+
+        frame.clear();
+        BinaryFrames.writeText(frame, "OK");
+        expectBytes("TEXT frame", EXPECTED_OK, frame);
+
+        // Reply lines are built in a reused StringBuilder; the trailing newline is dropped.
+        frame.clear();
+        BinaryFrames.writeText(frame, new StringBuilder("OK\n"));
+        expectBytes("TEXT frame from a StringBuilder line", EXPECTED_OK, frame);
+        snapshot.release();
+    }
+
+    private static void checkLoopback(int port) throws Exception {
+        FieldCatalog catalog = catalog();
+        TelemetryServer server = new TelemetryServer(port, catalog, null, 100, 16);
+        server.start();
+        Thread.sleep(200);
+        try (Socket binary = new Socket("127.0.0.1", port);
+                Socket text = new Socket("127.0.0.1", port)) {
+            binary.setSoTimeout(READ_TIMEOUT_MS);
+            text.setSoTimeout(READ_TIMEOUT_MS);
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(binary.getInputStream()));
+            DataInputStream textIn =
+                    new DataInputStream(new BufferedInputStream(text.getInputStream()));
+            OutputStream out = binary.getOutputStream();
+            OutputStream textOut = text.getOutputStream();
+
+            // Handshake: one text line, then only frames.
+            write(out, "HELLO binary=1\n");
+            expect("BINARY line", "BINARY 1", readLine(in));
+            expect(
+                    "FIELDS frame",
+                    "FIELDS a,double,A,0.0;b,long,,0.0;s,string,,0.0;q,double,m,0.01;e,double,,0.0",
+                    readText(in));
+            write(out, "SUB ALL rate=50\nBOGUS\n");
+            expect("SUB reply", "OK", readText(in));
+            expect("unknown command reply", "ERR unknown", readText(in));
+            write(textOut, "SUB ALL rate=50\n");
+            expect("text SUB reply", "OK", readLine(textIn));
+
+            // Both clients get the same snapshot, each in its own protocol.
+            server.setSnapshot(sample(catalog.size()));
+            byte[] payload = readFrame(in, 'D');
+            if (payload.length > 0 && payload[0] == 0) {
+                // The empty snapshot from before the publish went out first; take the next.
+                payload = readFrame(in, 'D');
+            }
+            checkDataPayload(payload);
+            String line = readLine(textIn);
+            if (line.startsWith("DATA ,")) {
+                line = readLine(textIn);
+            }
+            expect("text DATA line", "DATA -3.25,-2,h\u00e9,1.235,", line);
+        } finally {
+            server.close();
+        }
+    }
+
+    private static void checkDataPayload(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        expect("DATA seq", 1L, readVarint(in));
+        readVarint(in); // t_us: robot time, not fixed
+        expect("DATA count", 5L, readVarint(in));
+        expect("a field", 0L, readVarint(in));
+        expect("a tag", (long) BinaryFrames.TAG_DOUBLE, (long) in.readUnsignedByte());
+        expect("a value", -3.25, in.readDouble());
+        expect("b field", 1L, readVarint(in));
+        expect("b tag", (long) BinaryFrames.TAG_LONG, (long) in.readUnsignedByte());
+        expect("b value", -2L, unzigzag(readVarint(in)));
+        expect("s field", 2L, readVarint(in));
+        expect("s tag", (long) BinaryFrames.TAG_STRING, (long) in.readUnsignedByte());
+        byte[] text = new byte[(int) readVarint(in)];
+        in.readFully(text);
+        expect("s value", "h\u00e9", new String(text, StandardCharsets.UTF_8));
+        expect("q field", 3L, readVarint(in));
+        expect("q tag", (long) BinaryFrames.TAG_QUANTIZED, (long) in.readUnsignedByte());
+        expect("q steps", 123L, unzigzag(readVarint(in)));
+        expect("e field", 4L, readVarint(in));
+        expect("e tag", (long) BinaryFrames.TAG_EMPTY, (long) in.readUnsignedByte());
+        expect("DATA trailing bytes", 0L, (long) in.available());
+    }
+
+    private static FieldCatalog catalog() {
+        // One field of every kind the wire format has.
+        FieldCatalog catalog = new FieldCatalog();
+        catalog.add(new SchemaField("a", "double", "A", 0.0));
+        catalog.add(new SchemaField("b", "long", "", 0.0));
+        catalog.add(new SchemaField("s", "string", "", 0.0));
+        catalog.add(new SchemaField("q", "double", "m", 0.01));
+        catalog.add(new SchemaField("e", "double", "", 0.0));
+        return catalog;
+    }
+
+    private static TelemetrySnapshot sample(int size) {
+        TelemetrySnapshotBuilder builder = new TelemetrySnapshotBuilder(size);
+        builder.set(0, -3.25, "%.2f");
+        builder.set(1, -2L);
+        builder.set(2, "h\u00e9");
+        builder.set(3, 1.2345, "%.3f");
+        return builder.build();
+    }
+
+    private static byte[] readFrame(DataInputStream in, int type) throws IOException {
+        int length = in.readInt();
+        int actual = in.readUnsignedByte();
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        expect("frame type", (long) type, (long) actual);
+        return payload;
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        return new String(readFrame(in, BinaryFrames.TYPE_TEXT), StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        byte[] line = new byte[256];
+        int length = 0;
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("connection closed mid-line");
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = (byte) b;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void expectBytes(String what, int[] expected, FrameBuffer actual) {
+        byte[] bytes = Arrays.copyOf(actual.array(), actual.size());
+        byte[] wanted = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            wanted[i] = (byte) expected[i];
+        }
+        expect(what, Arrays.toString(wanted), Arrays.toString(bytes));
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) {
+            failures++;
+            System.out.println("FAIL " + what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
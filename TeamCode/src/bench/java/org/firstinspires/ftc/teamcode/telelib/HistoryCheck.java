@@ -0,0 +1,133 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Edge cases of TelemetryHistory queries, run on a laptop (not part of the robot app).
+ *
+ * Like asking the DVR for a channel that never aired: a field with no samples must answer
+ * every HIST resolution with an empty range instead of throwing on the IO thread. Each
+ * tier is queried with nothing recorded at all, then again after other fields were
+ * recorded for a few seconds. A wide catalog with the default rollup budgets must still
+ * backfill the last two minutes from both rollup tiers.
+ *
+ * java ...telelib.HistoryCheck   (exit status 1 when a check fails)
+ */
+public final class HistoryCheck {
+    // HIST resolutions: raw samples, the 100 ms tier and the 1 s tier.
+    private static final long[] RESOLUTIONS_US = {0L, 100_000L, 1_000_000L};
+    // Loop period of the recorded samples (200 Hz).
+    private static final long PERIOD_US = 5_000L;
+    // Wide catalog: numeric fields, the loop period and the backfill it must cover.
+    private static final int WIDE_FIELDS = 120;
+    private static final long WIDE_PERIOD_US = 20_000L;
+    private static final long BACKFILL_US = 120_000_000L;
+
+    private static int checks;
+    private static int failures;
+
+    private HistoryCheck() {}
+
+    /**
+     * Run the checks and print the totals.
+     */
+    public static void main(String[] args) {
+        FieldCatalog catalog = new FieldCatalog();
+        int busy = catalog.add("busy", "double", "");
+        int idle = catalog.add("idle", "double", "");
+        int counter = catalog.add("counter", "long", "");
+        TelemetryHistory history = new TelemetryHistory(catalog, 64, 16, 16);
+
+        checkEmpty("before any record", history, idle, 0L, Long.MAX_VALUE);
+        checkEmpty("before any record", history, busy, 0L, Long.MAX_VALUE);
+
+        // Three seconds of samples for busy and counter; idle is never put.
+        long seq = 0;
+        for (long t = 0; t <= 3_000_000L; t += PERIOD_US) {
+            TelemetrySnapshotBuilder builder = new TelemetrySnapshotBuilder(catalog.size());
+            builder.set(busy, Math.sin(t / 1e6), "%.3f");
+            builder.set(counter, seq);
+            TelemetrySnapshot snapshot = builder.build();
+            snapshot.stamp(++seq, t);
+            history.record(snapshot);
+        }
+
+        checkEmpty("after other fields recorded", history, idle, 0L, Long.MAX_VALUE);
+        checkEmpty("range before first sample", history, busy, -2_000_000L, -1L);
+        try (TelemetryHistory.Cursor cursor = history.read(idle, 0L)) {
+            expect("read of idle field has a sample", false, cursor.next());
+        }
+        expect(
+                "raw points of busy field",
+                (int) (3_000_000L / PERIOD_US) + 1,
+                history.query(busy, 0L, Long.MAX_VALUE, 0L).size());
+        expect(
+                "1 s points of counter field",
+                3,
+                history.query(counter, 0L, Long.MAX_VALUE, 1_000_000L).size());
+        checkWideCoverage();
+
+        System.out.println("checks=" + checks + " failures=" + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void checkWideCoverage() {
+        /*
+         * Every rollup bucket holds all numeric fields, so a wide schema used to get a
+         * fraction of the retention of a narrow one. Record 200 s of a 50 Hz loop and ask
+         * both tiers for the last two minutes.
+         */
+        FieldCatalog catalog = new FieldCatalog();
+        for (int i = 0; i < WIDE_FIELDS; i++) {
+            catalog.add("field_" + i, "double", "");
+        }
+        TelemetryHistory history = new TelemetryHistory(catalog, 64);
+        long endUs = 200_000_000L;
+        long seq = 0;
+        TelemetrySnapshotBuilder builder = new TelemetrySnapshotBuilder(catalog.size());
+        for (long t = 0; t <= endUs; t += WIDE_PERIOD_US) {
+            builder.begin();
+            for (int i = 0; i < WIDE_FIELDS; i++) {
+                builder.set(i, i + t / 1e6, "%.3f");
+            }
+            TelemetrySnapshot snapshot = builder.build();
+            snapshot.stamp(++seq, t);
+            history.record(snapshot);
+            snapshot.release();
+        }
+        long fromUs = endUs - BACKFILL_US;
+        for (long resolutionUs : new long[] {100_000L, 1_000_000L}) {
+            HistoryRange range = history.query(WIDE_FIELDS - 1, fromUs, endUs, resolutionUs);
+            String what = WIDE_FIELDS + " fields res " + resolutionUs / 1000 + " ms";
+            expect(what + " source tier", resolutionUs, range.sourceResolutionUs());
+            expect(what + " first point", fromUs, range.size() > 0 ? range.timestampUs(0) : -1L);
+            // The bucket holding endUs is still open, so it is not included.
+            expect(what + " points", (int) (BACKFILL_US / resolutionUs), range.size());
+        }
+    }
+
+    private static void checkEmpty(
+            String when, TelemetryHistory history, int field, long fromUs, long toUs) {
+        for (long resolutionUs : RESOLUTIONS_US) {
+            String what = "field " + field + " res " + resolutionUs / 1000 + " ms " + when;
+            HistoryRange range;
+            try {
+                range = history.query(field, fromUs, toUs, resolutionUs);
+            } catch (RuntimeException e) {
+                expect(what + " throws", "no exception", e.toString());
+                continue;
+            }
+            expect(what + " points", 0, range.size());
+            range = history.query(field, fromUs, toUs, resolutionUs, 100);
+            expect(what + " points (maxPoints 100)", 0, range.size());
+        }
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) {
+            failures++;
+            System.out.println("FAIL " + what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Randomized comparison of NumericFormat against String.format(Locale.US, ...), run on a
+ * laptop (not part of the robot app).
+ *
+ * Like proofreading a copy against the original: every value is formatted both ways and
+ * the two strings must be identical. Values cover every magnitude the fast path handles,
+ * the exact tie points (x.5 at the last digit) where rounding is decided, the doubles right
+ * next to them, and the special values. Exotic patterns check the String.format fallback.
+ *
+ * java ...telelib.NumericFormatCheck [valuesPerPattern] [seed]   (exit status 1 on mismatch)
+ */
+public final class NumericFormatCheck {
+    private static final int DEFAULT_VALUES = 50_000;
+    // Mismatches printed before the rest are only counted.
+    private static final int MAX_REPORTED = 20;
+    private static final String[] EXOTIC_PATTERNS = {"%8.3f", "%-8.2f", "%+.2f", "%,.2f", "%e"};
+    private static final double[] SPECIAL_VALUES = {
+        0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+        1e-300, -1e-7, 0.5, -0.5, 1.5, 2.5, 0.125, 0.005, 1.005, 1e13, 9.999999999999999e13,
+        1e14, 1e15, 123456789.123456789, -987654321.0
+    };
+
+    private static long checked;
+    private static long mismatches;
+
+    private NumericFormatCheck() {}
+
+    /**
+     * Compare every "%.Nf" (N = 0..15), "%f", text around a format and the fallback
+     * patterns, then print the totals.
+     */
+    public static void main(String[] args) {
+        int values = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_VALUES;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Random random = new Random(seed);
+        for (int decimals = 0; decimals <= 15; decimals++) {
+            checkPattern("%." + decimals + "f", decimals, values, random);
+        }
+        checkPattern("%f", 6, values, random);
+        checkPattern("x=%.2f m", 2, values / 10, random);
+        for (String pattern : EXOTIC_PATTERNS) {
+            checkPattern(pattern, 3, values / 100, random);
+        }
+        System.out.println(
+                String.format(
+                        Locale.US,
+                        "checked=%d mismatches=%d seed=%d",
+                        checked,
+                        mismatches,
+                        seed));
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void checkPattern(String pattern, int decimals, int values, Random random) {
+        NumericFormat format = NumericFormat.compile(pattern);
+        StringBuilder out = new StringBuilder(64);
+        for (double value : SPECIAL_VALUES) {
+            check(format, value, out);
+        }
+        double scale = Math.pow(10, decimals);
+        for (int i = 0; i < values; i++) {
+            // Any magnitude the fast path handles (and some above it), either sign.
+            double magnitude = Math.pow(10, random.nextInt(16) - decimals);
+            double value = random.nextDouble() * magnitude;
+            if (random.nextBoolean()) {
+                value = -value;
+            }
+            check(format, value, out);
+            // The exact tie point at the last digit, and the doubles on either side of it.
+            long steps = (long) (random.nextDouble() * Math.min(1e12, 1e14 / scale));
+            double tie = (steps + 0.5) / scale;
+            check(format, tie, out);
+            check(format, Math.nextUp(tie), out);
+            check(format, Math.nextDown(tie), out);
+            check(format, -tie, out);
+        }
+    }
+
+    private static void check(NumericFormat format, double value, StringBuilder out) {
+        String expected = String.format(Locale.US, format.pattern(), value);
+        out.setLength(0);
+        format.appendTo(value, out);
+        checked++;
+        if (!expected.contentEquals(out) || !expected.equals(format.format(value))) {
+            mismatches++;
+            if (mismatches <= MAX_REPORTED) {
+                System.out.println(
+                        "MISMATCH "
+                                + format.pattern()
+                                + " value="
+                                + Double.toString(value)
+                                + " expected="
+                                + expected
+                                + " actual="
+                                + out);
+            }
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import android.content.Context;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import org.firstinspires.ftc.robotcore.external.Func;
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+/**
+ * Micro-benchmarks for the telelib hot paths, run on a laptop (not part of the robot app).
+ *
+ * Like a stopwatch plus a scale: every benchmark reports time per operation and heap
+ * bytes allocated per operation, so a change to telelib can be compared with a baseline
+ * run of the same command. The loop-side benchmarks call the real SchemaTelemetryService,
+ * SchemaTelemetryBus and TelelibTelemetry; the few SDK and org.json classes they touch
+ * come from the stubs in src/bench/stubs.
+ *
+ * java ...telelib.TelemetryBench [filter]   (runs the benchmarks whose name contains filter)
+ */
+public final class TelemetryBench {
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long ROUND_NANOS = 1_000_000_000L;
+    private static final int ROUNDS = 5;
+    private static final int[] SCHEMA_SIZES = {8, 32, 128};
+    private static final int[] CLIENT_COUNTS = {1, 4, 16};
+    private static final int FIRST_PORT = 5700;
+    private static final int BENCH_HISTORY_KB = 4096;
+    private static final int BENCH_RECORDER_MB = 16;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final HardwareMap HARDWARE = new HardwareMap(new Context());
+    // What the current benchmark opened (services, buses); closed when it is done.
+    private static final List<AutoCloseable> OPENED = new ArrayList<>();
+    // Every operation's result is written here, so the JIT cannot drop work as unused.
+    private static volatile Object sink;
+    private static int nextPort = FIRST_PORT;
+
+    /** One benchmark operation; its result goes to the sink. */
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    /** Builds an operation, only when its benchmark is selected by the filter. */
+    private interface Setup {
+        Operation create() throws Exception;
+    }
+
+    /** Which optional parts of SchemaTelemetryService a publish benchmark turns on. */
+    private enum Options {
+        PLAIN,
+        HISTORY,
+        SELF_STATS,
+        ASYNC,
+        RECORDER
+    }
+
+    private TelemetryBench() {}
+
+    /**
+     * Run every benchmark (or those whose name contains args[0]) and print a table.
+     */
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        System.out.println(
+                String.format(
+                        Locale.US, "%-36s %12s %12s %12s", "benchmark", "ns/op", "+/-", "B/op"));
+        for (int size : SCHEMA_SIZES) {
+            run(filter, "publish/fields=" + size, () -> publish(size, Options.PLAIN));
+            run(filter, "publish+history/fields=" + size, () -> publish(size, Options.HISTORY));
+            run(
+                    filter,
+                    "publish+selfstats/fields=" + size,
+                    () -> publish(size, Options.SELF_STATS));
+            run(filter, "publish+async/fields=" + size, () -> publish(size, Options.ASYNC));
+            run(filter, "publish+recorder/fields=" + size, () -> publish(size, Options.RECORDER));
+            run(filter, "puts/name/fields=" + size, () -> puts(size, false));
+            run(filter, "puts/handle/fields=" + size, () -> puts(size, true));
+            run(filter, "appendCsv/fields=" + size, () -> appendCsv(size));
+            run(filter, "toCsv/fields=" + size, () -> toCsv(size));
+            run(filter, "binaryData/fields=" + size, () -> binaryData(size));
+        }
+        run(filter, "subsystem/by-name", () -> subsystem(0));
+        run(filter, "subsystem/by-handle", () -> subsystem(1));
+        run(filter, "subsystem/binder", () -> subsystem(2));
+        run(filter, "telemetry-update/captions=8", () -> telemetryUpdate(8));
+        run(filter, "telemetry-update/captions=32", () -> telemetryUpdate(32));
+        for (int clients : CLIENT_COUNTS) {
+            String name = "broadcast/clients=" + clients;
+            if (name.contains(filter)) {
+                broadcast(name, clients);
+            }
+        }
+    }
+
+    private static Operation publish(int size, Options options) {
+        /*
+         * One loop of SchemaTelemetryService: begin(), put() every field by name,
+         * publish() (to the server, and to history, the recorder or the publish thread
+         * when turned on). No client is connected.
+         */
+        SchemaTelemetryService service = service(size, options);
+        String[] names = names(size);
+        long[] loop = new long[1];
+        return () -> {
+            long n = ++loop[0];
+            service.begin();
+            for (int i = 0; i < size; i++) {
+                switch (i % 4) {
+                    case 0:
+                        service.put(names[i], n);
+                        break;
+                    case 1:
+                        service.put(names[i], i % 8 == 1 ? "RUNNING" : "IDLE");
+                        break;
+                    default:
+                        service.put(names[i], Math.sin(n * 0.01 + i), "%.3f");
+                        break;
+                }
+            }
+            service.publish();
+            return service;
+        };
+    }
+
+    private static Operation puts(int size, boolean withHandles) {
+        /*
+         * Only the put() side of a loop on SchemaTelemetryService, by name (map lookup per
+         * put) or through FieldHandles resolved up front with field(name).
+         */
+        SchemaTelemetryService service = service(size, Options.PLAIN);
+        String[] names = names(size);
+        FieldHandle[] handles = new FieldHandle[size];
+        for (int i = 0; i < size; i++) {
+            handles[i] = service.field(names[i]);
+        }
+        long[] loop = new long[1];
+        return () -> {
+            long n = ++loop[0];
+            // begin() hands the unpublished buffer of the previous op back to the pool.
+            service.begin();
+            for (int i = 0; i < size; i++) {
+                if (withHandles) {
+                    switch (i % 4) {
+                        case 0:
+                            service.put(handles[i], n);
+                            break;
+                        case 1:
+                            service.put(handles[i], i % 8 == 1 ? "RUNNING" : "IDLE");
+                            break;
+                        default:
+                            service.put(handles[i], n * 0.01 + i);
+                            break;
+                    }
+                } else {
+                    switch (i % 4) {
+                        case 0:
+                            service.put(names[i], n);
+                            break;
+                        case 1:
+                            service.put(names[i], i % 8 == 1 ? "RUNNING" : "IDLE");
+                            break;
+                        default:
+                            service.put(names[i], n * 0.01 + i, "%.3f");
+                            break;
+                    }
+                }
+            }
+            return service;
+        };
+    }
+
+    private static Operation subsystem(int style) {
+        /*
+         * One subsystem's publishTelemetry(bus) on a SchemaTelemetryBus, written three ways:
+         * put(name, ...) calls, put(handle, ...) calls by hand, and the @TelemetryField
+         * binding from the annotation processor (through TelemetryBinder).
+         */
+        BenchSubsystem shooter = new BenchSubsystem();
+        SchemaTelemetryBus bus = new SchemaTelemetryBus(HARDWARE, schema(BenchSubsystem.FIELDS));
+        OPENED.add(bus);
+        bus.start();
+        TelemetryPublisher publisher;
+        if (style == 0) {
+            publisher = shooter::publishByName;
+        } else if (style == 1) {
+            FieldHandle[] handles = new FieldHandle[BenchSubsystem.FIELDS];
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = bus.field("field_" + i);
+            }
+            publisher = b -> shooter.publishByHandle(b, handles);
+        } else {
+            TelemetryBinder binder = new TelemetryBinder();
+            binder.add(shooter);
+            publisher = binder;
+        }
+        return () -> {
+            shooter.velocity += 0.5;
+            bus.begin();
+            publisher.publishTelemetry(bus);
+            bus.publish();
+            return bus;
+        };
+    }
+
+    private static Operation telemetryUpdate(int captions) {
+        /*
+         * An OpMode that only uses telemetry.addData()/update(): TelelibTelemetry over a
+         * Driver Station telemetry that does nothing, mirroring into a SchemaTelemetryBus.
+         * Captions are numbers, formatted numbers, status text and a Func in turn.
+         */
+        SchemaTelemetryBus bus = new SchemaTelemetryBus(HARDWARE, schema(captions));
+        TelelibTelemetry telemetry = new TelelibTelemetry(new NullTelemetry(), bus);
+        OPENED.add(telemetry);
+        String[] names = names(captions);
+        double[] heading = new double[1];
+        Func<Double> headingFunc = () -> heading[0];
+        long[] loop = new long[1];
+        return () -> {
+            long n = ++loop[0];
+            heading[0] = n * 0.1;
+            for (int i = 0; i < captions; i++) {
+                switch (i % 4) {
+                    case 0:
+                        telemetry.addData(names[i], n);
+                        break;
+                    case 1:
+                        telemetry.addData(names[i], i % 8 == 1 ? "RUNNING" : "IDLE");
+                        break;
+                    case 2:
+                        telemetry.addData(names[i], "%.3f", Math.sin(n * 0.01 + i));
+                        break;
+                    default:
+                        telemetry.addData(names[i], "%.1f", headingFunc);
+                        break;
+                }
+            }
+            return telemetry.update();
+        };
+    }
+
+    private static Operation appendCsv(int size) {
+        TelemetrySnapshot snapshot = sample(size);
+        int[] fields = allFields(size);
+        StringBuilder line = new StringBuilder(size * 12);
+        return () -> {
+            line.setLength(0);
+            snapshot.appendCsv(fields, line);
+            return line;
+        };
+    }
+
+    private static Operation toCsv(int size) {
+        TelemetrySnapshot snapshot = sample(size);
+        int[] fields = allFields(size);
+        return () -> snapshot.toCsv(fields);
+    }
+
+    private static Operation binaryData(int size) {
+        TelemetrySnapshot snapshot = sample(size);
+        int[] fields = allFields(size);
+        double[] quanta = new double[size];
+        Arrays.fill(quanta, 0.001);
+        FrameBuffer frame = new FrameBuffer(size * 12);
+        return () -> {
+            frame.clear();
+            BinaryFrames.writeData(frame, snapshot, fields, quanta);
+            return frame;
+        };
+    }
+
+    private static void broadcast(String name, int clients) throws Exception {
+        /*
+         * N loopback clients on "SUB ALL rate=100" while a SchemaTelemetryService loop
+         * publishes at 1 kHz. Reported per DATA line received: IO thread CPU time and
+         * bytes allocated on the IO thread.
+         */
+        int size = 32;
+        int port = nextPort;
+        SchemaTelemetryService service = service(size, Options.PLAIN);
+        String[] names = names(size);
+        Thread.sleep(200);
+        List<Socket> sockets = new ArrayList<>();
+        LongAdder lines = new LongAdder();
+        try {
+            for (int c = 0; c < clients; c++) {
+                Socket socket = new Socket("127.0.0.1", port);
+                sockets.add(socket);
+                OutputStream out = socket.getOutputStream();
+                out.write("SUB ALL rate=100\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                InputStream in = socket.getInputStream();
+                Thread drain = new Thread(() -> drain(in, lines), "BenchClient" + c);
+                drain.setDaemon(true);
+                drain.start();
+            }
+            long ioThread = findThread("TelemetryServerIO");
+            // Warm up, then measure one round.
+            double[] result = null;
+            for (int round = 0; round < 2; round++) {
+                long lines0 = lines.sum();
+                long cpu0 = THREADS.getThreadCpuTime(ioThread);
+                long alloc0 = allocatedBytes(ioThread);
+                long end = System.nanoTime() + 2 * ROUND_NANOS;
+                long next = System.nanoTime();
+                while (System.nanoTime() < end) {
+                    service.begin();
+                    for (int i = 0; i < size; i++) {
+                        service.put(names[i], Math.sin(next * 1e-9 + i), "%.3f");
+                    }
+                    service.publish();
+                    next += 1_000_000L;
+                    while (System.nanoTime() < next) {
+                        Thread.yield();
+                    }
+                }
+                // Let the clients read what is still in flight.
+                Thread.sleep(100);
+                long frames = Math.max(1, lines.sum() - lines0);
+                result =
+                        new double[] {
+                            (THREADS.getThreadCpuTime(ioThread) - cpu0) / (double) frames,
+                            (allocatedBytes(ioThread) - alloc0) / (double) frames
+                        };
+            }
+            System.out.println(
+                    String.format(
+                            Locale.US,
+                            "%-36s %12.1f %12s %12.1f   (IO thread, per frame)",
+                            name,
+                            result[0],
+                            "-",
+                            result[1]));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            closeOpened();
+        }
+    }
+
+    private static void run(String filter, String name, Setup setup) throws Exception {
+        /*
+         * Warm up (so the JIT has compiled the path), then time ROUNDS rounds. Allocation
+         * is measured on this thread over all rounds together.
+         */
+        if (!name.contains(filter)) {
+            return;
+        }
+        try {
+            Operation operation = setup.create();
+            long warmEnd = System.nanoTime() + WARMUP_NANOS;
+            while (System.nanoTime() < warmEnd) {
+                for (int i = 0; i < 1000; i++) {
+                    sink = operation.run();
+                }
+            }
+            long thread = Thread.currentThread().getId();
+            double[] nsPerOp = new double[ROUNDS];
+            long totalOps = 0;
+            long alloc0 = allocatedBytes(thread);
+            for (int round = 0; round < ROUNDS; round++) {
+                long ops = 0;
+                long start = System.nanoTime();
+                long end = start + ROUND_NANOS;
+                long now;
+                do {
+                    for (int i = 0; i < 1000; i++) {
+                        sink = operation.run();
+                    }
+                    ops += 1000;
+                    now = System.nanoTime();
+                } while (now < end);
+                nsPerOp[round] = (now - start) / (double) ops;
+                totalOps += ops;
+            }
+            double bytesPerOp = (allocatedBytes(thread) - alloc0) / (double) totalOps;
+            Arrays.sort(nsPerOp);
+            double median = nsPerOp[ROUNDS / 2];
+            double spread = (nsPerOp[ROUNDS - 1] - nsPerOp[0]) / 2;
+            System.out.println(
+                    String.format(
+                            Locale.US,
+                            "%-36s %12.1f %12.1f %12.1f",
+                            name,
+                            median,
+                            spread,
+                            bytesPerOp));
+        } finally {
+            closeOpened();
+        }
+    }
+
+    private static SchemaTelemetryService service(int size, Options options) {
+        // Started like an OpMode would, on a port of its own; closed after the benchmark.
+        SchemaTelemetryService service =
+                new SchemaTelemetryService(HARDWARE, schema(size, options), null);
+        OPENED.add(service);
+        service.start();
+        return service;
+    }
+
+    private static TelemetrySchema schema(int size) {
+        return schema(size, Options.PLAIN);
+    }
+
+    private static TelemetrySchema schema(int size, Options options) {
+        // Same mix as a typical schema: mostly doubles, some counters and status strings.
+        List<SchemaField> fields = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String type = i % 4 == 0 ? "long" : i % 4 == 1 ? "string" : "double";
+            fields.add(new SchemaField("field_" + i, type, "", 0.0));
+        }
+        return new TelemetrySchema(
+                nextPort++,
+                false,
+                100,
+                TelemetryServer.DEFAULT_SAMPLE_BUFFER,
+                options == Options.HISTORY ? BENCH_HISTORY_KB : 0,
+                TelemetryHistory.DEFAULT_ROLLUP_100MS_KB,
+                TelemetryHistory.DEFAULT_ROLLUP_1S_KB,
+                options == Options.RECORDER ? BENCH_RECORDER_MB : 0,
+                options == Options.SELF_STATS,
+                options == Options.ASYNC,
+                0,
+                "",
+                UdpTransport.DEFAULT_RATE_HZ,
+                fields);
+    }
+
+    private static void closeOpened() throws Exception {
+        for (int i = OPENED.size() - 1; i >= 0; i--) {
+            OPENED.get(i).close();
+        }
+        OPENED.clear();
+    }
+
+    private static String[] names(int size) {
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "field_" + i;
+        }
+        return names;
+    }
+
+    private static TelemetrySnapshot sample(int size) {
+        TelemetrySnapshotBuilder builder = new TelemetrySnapshotBuilder(size);
+        builder.begin();
+        for (int i = 0; i < size; i++) {
+            switch (i % 4) {
+                case 0:
+                    builder.set(i, 1234567L + i);
+                    break;
+                case 1:
+                    builder.set(i, "RUNNING");
+                    break;
+                default:
+                    builder.set(i, -12.3456 * i, "%.3f");
+                    break;
+            }
+        }
+        return builder.build();
+    }
+
+    private static int[] allFields(int size) {
+        int[] fields = new int[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = i;
+        }
+        return fields;
+    }
+
+    private static long findThread(String name) {
+        // The newest one: IO threads of servers closed just before may not have exited yet.
+        long newest = -1;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                newest = Math.max(newest, thread.getId());
+            }
+        }
+        if (newest < 0) {
+            throw new IllegalStateException("No thread named " + name);
+        }
+        return newest;
+    }
+
+    private static long allocatedBytes(long threadId) {
+        // HotSpot-specific; reports 0 allocation on JVMs without the extension.
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+        }
+        return 0;
+    }
+
+    private static void drain(InputStream in, LongAdder lines) {
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                // Only the server side is measured; count lines to know how many frames came.
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines.increment();
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    /** Eight fields in the same long/string/double mix as schema(8). */
+    static final class BenchSubsystem {
+        static final int FIELDS = 8;
+
+        @TelemetryField("field_0")
+        long ticks = 123;
+
+        @TelemetryField("field_1")
+        String state = "RUNNING";
+
+        @TelemetryField("field_2")
+        double velocity;
+
+        @TelemetryField("field_3")
+        double power = 0.75;
+
+        @TelemetryField("field_4")
+        int position = 42;
+
+        @TelemetryField("field_5")
+        String mode = "AUTO";
+
+        @TelemetryField("field_6")
+        double target = 1800.0;
+
+        @TelemetryField("field_7")
+        double current = 2.5;
+
+        void publishByName(TelemetryBus bus) {
+            bus.put("field_0", ticks);
+            bus.put("field_1", state);
+            bus.put("field_2", velocity, "%.3f");
+            bus.put("field_3", power, "%.3f");
+            bus.put("field_4", position);
+            bus.put("field_5", mode);
+            bus.put("field_6", target, "%.3f");
+            bus.put("field_7", current, "%.3f");
+        }
+
+        void publishByHandle(TelemetryBus bus, FieldHandle[] handles) {
+            bus.put(handles[0], ticks);
+            bus.put(handles[1], state);
+            bus.put(handles[2], velocity);
+            bus.put(handles[3], power);
+            bus.put(handles[4], position);
+            bus.put(handles[5], mode);
+            bus.put(handles[6], target);
+            bus.put(handles[7], current);
+        }
+    }
+
+    /** Driver Station telemetry that shows nothing (auto-clear on, like the SDK default). */
+    private static final class NullTelemetry implements Telemetry {
+        @Override
+        public Item addData(String caption, String format, Object... args) {
+            return null;
+        }
+
+        @Override
+        public Item addData(String caption, Object value) {
+            return null;
+        }
+
+        @Override
+        public <T> Item addData(String caption, Func<T> valueProducer) {
+            // The SDK reads the value when it renders the line.
+            sink = valueProducer.value();
+            return null;
+        }
+
+        @Override
+        public <T> Item addData(String caption, String format, Func<T> valueProducer) {
+            sink = valueProducer.value();
+            return null;
+        }
+
+        @Override
+        public boolean removeItem(Item item) {
+            return false;
+        }
+
+        @Override
+        public void clear() {}
+
+        @Override
+        public void clearAll() {}
+
+        @Override
+        public Object addAction(Runnable action) {
+            return null;
+        }
+
+        @Override
+        public boolean removeAction(Object token) {
+            return false;
+        }
+
+        @Override
+        public void speak(String text) {}
+
+        @Override
+        public void speak(String text, String languageCode, String countryCode) {}
+
+        @Override
+        public boolean update() {
+            return true;
+        }
+
+        @Override
+        public Line addLine() {
+            return null;
+        }
+
+        @Override
+        public Line addLine(String lineCaption) {
+            return null;
+        }
+
+        @Override
+        public boolean removeLine(Line line) {
+            return false;
+        }
+
+        @Override
+        public boolean isAutoClear() {
+            return true;
+        }
+
+        @Override
+        public void setAutoClear(boolean autoClear) {}
+
+        @Override
+        public int getMsTransmissionInterval() {
+            return 250;
+        }
+
+        @Override
+        public void setMsTransmissionInterval(int msTransmissionInterval) {}
+
+        @Override
+        public String getItemSeparator() {
+            return " | ";
+        }
+
+        @Override
+        public void setItemSeparator(String itemSeparator) {}
+
+        @Override
+        public String getCaptionValueSeparator() {
+            return " : ";
+        }
+
+        @Override
+        public void setCaptionValueSeparator(String captionValueSeparator) {}
+
+        @Override
+        public void setDisplayFormat(DisplayFormat displayFormat) {}
+
+        @Override
+        public Log log() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks that a plain text client only gets the lines it asked for, run on a laptop (not
+ * part of the robot app).
+ *
+ * Like calling an old phone from a new one: a dashboard written before RATE and SHED
+ * existed must still understand everything it is sent. Clients with small receive buffers
+ * stop reading while large snapshots are published, so their send queues back up, then
+ * drain. A plain SUB client must never see a RATE or SHED line; one that sent adapt=1 must
+ * see RATE, and one that sent shed=1 must see SHED.
+ *
+ * java ...telelib.TextProtocolCheck [port]   (exit status 1 when a check fails)
+ */
+public final class TextProtocolCheck {
+    private static final int DEFAULT_PORT = 5760;
+    // Small client receive buffer, so the server's send queue fills quickly.
+    private static final int RECEIVE_BUFFER_BYTES = 4 * 1024;
+    // Published text per snapshot; a few of these exceed every congestion threshold.
+    private static final int BLOB_CHARS = 2000;
+    private static final long STALL_MS = 1500;
+    private static final long DRAIN_MS = 2000;
+
+    private static int checks;
+    private static int failures;
+
+    private TextProtocolCheck() {}
+
+    /**
+     * Run the checks and print the totals.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        FieldCatalog catalog = new FieldCatalog();
+        catalog.add("a", "double", "");
+        catalog.add("blob", "string", "");
+        catalog.add(
+                new SchemaField(
+                        "status", "string", "", 0.0, null, SchemaField.PRIORITY_BULK, 0.0));
+        TelemetryServer server = new TelemetryServer(port, catalog, null, 100, 16);
+        server.start();
+        Thread.sleep(200);
+        Publisher publisher = new Publisher(server, catalog.size());
+        try (Socket plain = connect(port);
+                Socket adapt = connect(port);
+                Socket shed = connect(port)) {
+            write(plain, "HELLO\nSUB ALL rate=100\n");
+            write(adapt, "HELLO\nSUB ALL rate=100 adapt=1\n");
+            write(shed, "HELLO\nSUB ALL rate=100 shed=1\n");
+            publisher.start();
+            // Nobody reads: both send queues back up.
+            Thread.sleep(STALL_MS);
+            LineKinds plainKinds = new LineKinds(plain);
+            LineKinds adaptKinds = new LineKinds(adapt);
+            LineKinds shedKinds = new LineKinds(shed);
+            long end = System.currentTimeMillis() + DRAIN_MS;
+            while (System.currentTimeMillis() < end) {
+                plainKinds.poll();
+                adaptKinds.poll();
+                shedKinds.poll();
+            }
+            expect("plain SUB got RATE", false, plainKinds.seen.contains("RATE"));
+            expect("plain SUB got SHED", false, plainKinds.seen.contains("SHED"));
+            expect("plain SUB got DATA", true, plainKinds.seen.contains("DATA"));
+            expect("adapt=1 SUB got RATE", true, adaptKinds.seen.contains("RATE"));
+            expect("adapt=1 SUB got SHED", false, adaptKinds.seen.contains("SHED"));
+            expect("shed=1 SUB got SHED", true, shedKinds.seen.contains("SHED"));
+            expect("shed=1 SUB got RATE", false, shedKinds.seen.contains("RATE"));
+        } finally {
+            publisher.stop();
+            server.close();
+        }
+        System.out.println("checks=" + checks + " failures=" + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(RECEIVE_BUFFER_BYTES);
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        socket.setSoTimeout(20);
+        return socket;
+    }
+
+    private static void write(Socket socket, String text) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) {
+            failures++;
+            System.out.println("FAIL " + what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    /** First word of every line one client receives. */
+    private static final class LineKinds {
+        final Set<String> seen = new TreeSet<>();
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final StringBuilder word = new StringBuilder();
+        private boolean atLineStart = true;
+        private boolean inWord;
+
+        LineKinds(Socket socket) throws IOException {
+            this.in = socket.getInputStream();
+        }
+
+        void poll() throws IOException {
+            // Read what has arrived; a line split across reads is still counted once.
+            int length;
+            try {
+                length = in.read(buffer);
+            } catch (SocketTimeoutException e) {
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = buffer[i];
+                if (atLineStart) {
+                    word.setLength(0);
+                    atLineStart = false;
+                    inWord = true;
+                }
+                if (b == '\n' || (b == ' ' && inWord)) {
+                    if (inWord) {
+                        seen.add(word.toString());
+                    }
+                    inWord = false;
+                    atLineStart = b == '\n';
+                } else if (inWord && word.length() < 16) {
+                    word.append((char) b);
+                }
+            }
+        }
+    }
+
+    /** Publishes a large snapshot every 2 ms until stopped. */
+    private static final class Publisher implements Runnable {
+        private final TelemetryServer server;
+        private final int fieldCount;
+        private final String blob;
+        private volatile boolean running;
+        private Thread thread;
+
+        Publisher(TelemetryServer server, int fieldCount) {
+            this.server = server;
+            this.fieldCount = fieldCount;
+            StringBuilder text = new StringBuilder(BLOB_CHARS);
+            for (int i = 0; i < BLOB_CHARS; i++) {
+                text.append((char) ('a' + i % 26));
+            }
+            this.blob = text.toString();
+        }
+
+        void start() {
+            running = true;
+            thread = new Thread(this, "CheckPublisher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            if (thread != null) {
+                thread.join(1000);
+            }
+        }
+
+        @Override
+        public void run() {
+            TelemetrySnapshotBuilder builder = new TelemetrySnapshotBuilder(fieldCount);
+            for (long i = 0; running; i++) {
+                builder.begin();
+                builder.set(0, i, "%.1f");
+                builder.set(1, blob);
+                builder.set(2, blob);
+                server.setSnapshot(builder.build());
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
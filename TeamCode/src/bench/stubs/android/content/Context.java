@@ -0,0 +1,20 @@
+package android.content;
+
+import android.content.res.AssetManager;
+import java.io.File;
+
+/**
+ * Bench-only stand-in for the Android Context: files live under the JVM temp directory
+ * and there are no assets.
+ */
+public class Context {
+    public File getFilesDir() {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "telelib-bench");
+        dir.mkdirs();
+        return dir;
+    }
+
+    public AssetManager getAssets() {
+        return new AssetManager();
+    }
+}
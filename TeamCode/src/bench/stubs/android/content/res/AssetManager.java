@@ -0,0 +1,14 @@
+package android.content.res;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bench-only stand-in for the Android AssetManager: no asset exists.
+ */
+public class AssetManager {
+    public InputStream open(String fileName) throws IOException {
+        throw new FileNotFoundException(fileName);
+    }
+}
@@ -0,0 +1,14 @@
+package com.qualcomm.robotcore.hardware;
+
+import android.content.Context;
+
+/**
+ * Bench-only stand-in for the FTC SDK HardwareMap: just the app context telelib reads.
+ */
+public class HardwareMap {
+    public final Context appContext;
+
+    public HardwareMap(Context appContext) {
+        this.appContext = appContext;
+    }
+}
@@ -0,0 +1,39 @@
+package com.qualcomm.robotcore.util;
+
+import java.util.Locale;
+
+/**
+ * Bench-only stand-in for the FTC SDK RobotLog: messages go to standard error.
+ */
+public final class RobotLog {
+    private RobotLog() {}
+
+    public static void ii(String tag, String format, Object... args) {
+        print("I", tag, null, format, args);
+    }
+
+    public static void ww(String tag, String format, Object... args) {
+        print("W", tag, null, format, args);
+    }
+
+    public static void ww(String tag, Throwable throwable, String format, Object... args) {
+        print("W", tag, throwable, format, args);
+    }
+
+    public static void ee(String tag, String format, Object... args) {
+        print("E", tag, null, format, args);
+    }
+
+    public static void ee(String tag, Throwable throwable, String format, Object... args) {
+        print("E", tag, throwable, format, args);
+    }
+
+    private static void print(
+            String level, String tag, Throwable throwable, String format, Object... args) {
+        String message = args.length == 0 ? format : String.format(Locale.US, format, args);
+        System.err.println(level + "/" + tag + ": " + message);
+        if (throwable != null) {
+            throwable.printStackTrace();
+        }
+    }
+}
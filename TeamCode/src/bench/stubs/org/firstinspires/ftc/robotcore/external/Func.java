@@ -0,0 +1,8 @@
+package org.firstinspires.ftc.robotcore.external;
+
+/**
+ * Bench-only stand-in for the FTC SDK Func.
+ */
+public interface Func<T> {
+    T value();
+}
@@ -0,0 +1,73 @@
+package org.firstinspires.ftc.robotcore.external;
+
+/**
+ * Bench-only stand-in for the FTC SDK Telemetry interface: the methods TelelibTelemetry
+ * implements, with empty Item, Line and Log types.
+ */
+public interface Telemetry {
+    Item addData(String caption, String format, Object... args);
+
+    Item addData(String caption, Object value);
+
+    <T> Item addData(String caption, Func<T> valueProducer);
+
+    <T> Item addData(String caption, String format, Func<T> valueProducer);
+
+    boolean removeItem(Item item);
+
+    void clear();
+
+    void clearAll();
+
+    Object addAction(Runnable action);
+
+    boolean removeAction(Object token);
+
+    void speak(String text);
+
+    void speak(String text, String languageCode, String countryCode);
+
+    boolean update();
+
+    Line addLine();
+
+    Line addLine(String lineCaption);
+
+    boolean removeLine(Line line);
+
+    boolean isAutoClear();
+
+    void setAutoClear(boolean autoClear);
+
+    int getMsTransmissionInterval();
+
+    void setMsTransmissionInterval(int msTransmissionInterval);
+
+    String getItemSeparator();
+
+    void setItemSeparator(String itemSeparator);
+
+    String getCaptionValueSeparator();
+
+    void setCaptionValueSeparator(String captionValueSeparator);
+
+    void setDisplayFormat(DisplayFormat displayFormat);
+
+    Log log();
+
+    /** One caption/value line. */
+    interface Item {}
+
+    /** A line of items. */
+    interface Line {}
+
+    /** The scrolling log area. */
+    interface Log {}
+
+    /** How the Driver Station renders telemetry. */
+    enum DisplayFormat {
+        CLASSIC,
+        MONOSPACE,
+        HTML
+    }
+}
@@ -0,0 +1,10 @@
+package org.json;
+
+/**
+ * Bench-only stand-in for Android's org.json.JSONException.
+ */
+public class JSONException extends Exception {
+    public JSONException(String message) {
+        super(message);
+    }
+}
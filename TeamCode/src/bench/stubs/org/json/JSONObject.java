@@ -0,0 +1,31 @@
+package org.json;
+
+/**
+ * Bench-only stand-in for Android's org.json.JSONObject. It cannot parse anything; the
+ * benches build TelemetrySchema directly instead of loading JSON.
+ */
+public class JSONObject {
+    public JSONObject(String json) throws JSONException {
+        throw new JSONException("org.json is not available in the bench build");
+    }
+
+    public int optInt(String name, int fallback) {
+        return fallback;
+    }
+
+    public boolean optBoolean(String name, boolean fallback) {
+        return fallback;
+    }
+
+    public double optDouble(String name, double fallback) {
+        return fallback;
+    }
+
+    public String optString(String name, String fallback) {
+        return fallback;
+    }
+
+    public JSONArray optJSONArray(String name) {
+        return null;
+    }
+}
@@ -0,0 +1,488 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Build step that turns telemetry_schema.json into a typed TelemetryFields class.
+ *
+ * Like printing name tags before the event instead of looking people up at the door: every
+ * schema field becomes an index constant and a putX(...) method with the right parameter
+ * type, so a typo is a compile error and a put is one array load. The generated schema()
+ * builds the TelemetrySchema directly, so OpMode init skips reading and parsing JSON.
+ *
+ * java ...telelib.SchemaCodegen schema.json outputDir [ClassName]
+ *
+ * Writes outputDir/org/firstinspires/ftc/teamcode/telelib/ClassName.java (default
+ * TelemetryFields), only when the content changed. Plain JDK only, like TelemetryBench.
+ */
+public final class SchemaCodegen {
+    private static final String PACKAGE = "org.firstinspires.ftc.teamcode.telelib";
+    private static final String DEFAULT_CLASS = "TelemetryFields";
+
+    private SchemaCodegen() {}
+
+    /**
+     * Generate the class; exits with status 1 and a message when the schema is invalid.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: SchemaCodegen schema.json outputDir [ClassName]");
+            System.exit(2);
+        }
+        File schemaFile = new File(args[0]);
+        String className = args.length > 2 ? args[2] : DEFAULT_CLASS;
+        String json = new String(Files.readAllBytes(schemaFile.toPath()), StandardCharsets.UTF_8);
+        String source;
+        try {
+            source = generate(json, schemaFile.getName(), className);
+        } catch (IllegalArgumentException e) {
+            System.err.println(schemaFile + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        File out = new File(args[1], PACKAGE.replace('.', File.separatorChar));
+        File target = new File(out, className + ".java");
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        if (target.isFile() && Arrays.equals(Files.readAllBytes(target.toPath()), bytes)) {
+            // Unchanged: keep the timestamp so the build does not recompile it.
+            return;
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("Cannot create " + out);
+        }
+        Files.write(target.toPath(), bytes);
+        System.out.println("Wrote " + target);
+    }
+
+    /**
+     * Java source of the generated class for one schema JSON document.
+     */
+    static String generate(String json, String sourceName, String className) {
+        Object root = new JsonReader(json).readDocument();
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("schema must be a JSON object");
+        }
+        Map<?, ?> schema = (Map<?, ?>) root;
+        Object fieldArray = schema.get("fields");
+        if (!(fieldArray instanceof List)) {
+            throw new IllegalArgumentException("schema must include a fields array");
+        }
+        List<String[]> fields = new ArrayList<>();
+        List<String> constants = new ArrayList<>();
+        List<String> methods = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Object item : (List<?>) fieldArray) {
+            // Same rules as TelemetrySchema.fromConfig: non-objects are skipped.
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> field = (Map<?, ?>) item;
+            String name = string(field, "name", "");
+            String type = string(field, "type", "double");
+            String unit = string(field, "unit", "");
+            double quantum = number(field, "quantum", 0.0);
+            String format = string(field, "format", SchemaField.DEFAULT_FORMAT);
+            int priority = SchemaField.parsePriority(string(field, "priority", "normal"));
+            double maxRateHz = number(field, "max_rate_hz", 0.0);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("field " + fields.size() + " has no name");
+            }
+            if (!type.equals("double") && !type.equals("long") && !type.equals("string")) {
+                throw new IllegalArgumentException(name + ": unknown type " + type);
+            }
+            if (type.equals("double") && !format.isEmpty()) {
+                try {
+                    String.format(Locale.US, format, 0.0);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(name + ": bad format " + format);
+                }
+            }
+            if (priority < 0) {
+                throw new IllegalArgumentException(
+                        name + ": priority must be critical, normal or bulk");
+            }
+            String constant = constantName(name);
+            String method = "put" + camelName(name);
+            if (!seen.add(name) || constants.contains(constant) || methods.contains(method)) {
+                throw new IllegalArgumentException(name + ": duplicate field name");
+            }
+            fields.add(
+                    new String[] {
+                        name,
+                        type,
+                        unit,
+                        Double.toString(quantum),
+                        format,
+                        "SchemaField.PRIORITY_" + SchemaField.priorityName(priority)
+                                .toUpperCase(Locale.US),
+                        Double.toString(maxRateHz)
+                    });
+            constants.add(constant);
+            methods.add(method);
+        }
+
+        StringBuilder out = new StringBuilder(4096 + fields.size() * 400);
+        out.append("// Generated by SchemaCodegen from ")
+                .append(sourceName)
+                .append(". Do not edit; run the generator again.\n")
+                .append("package ")
+                .append(PACKAGE)
+                .append(";\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n")
+                .append(" * Typed puts for every field of ")
+                .append(sourceName)
+                .append(", checked by the compiler.\n")
+                .append(" *\n")
+                .append(" * Build the bus from schema() so the indexes below match its catalog.\n")
+                .append(" */\n")
+                .append("public final class ")
+                .append(className)
+                .append(" {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            out.append("    /** ").append(fields.get(i)[0]).append(" (")
+                    .append(fields.get(i)[1]).append("). */\n")
+                    .append("    public static final int ").append(constants.get(i))
+                    .append(" = ").append(i).append(";\n");
+        }
+        out.append("    /** Number of schema fields. */\n")
+                .append("    public static final int FIELD_COUNT = ")
+                .append(fields.size())
+                .append(";\n\n")
+                .append("    private final TelemetryBus bus;\n")
+                .append("    private final FieldHandle[] handles")
+                .append(" = new FieldHandle[FIELD_COUNT];\n\n")
+                .append("    /**\n")
+                .append("     * Resolve every field once; puts then skip the name lookup.\n")
+                .append("     */\n")
+                .append("    public ")
+                .append(className)
+                .append("(TelemetryBus bus) {\n")
+                .append("        this.bus = bus;\n");
+        for (int i = 0; i < fields.size(); i++) {
+            out.append("        handles[").append(constants.get(i)).append("] = bus.field(")
+                    .append(quote(fields.get(i)[0])).append(");\n");
+        }
+        out.append("    }\n\n")
+                .append("    /**\n")
+                .append("     * The schema as generated, built without loading or parsing JSON.\n")
+                .append("     */\n")
+                .append("    public static TelemetrySchema schema() {\n")
+                .append("        List<SchemaField> fields = new ArrayList<>(FIELD_COUNT);\n");
+        for (String[] field : fields) {
+            out.append("        fields.add(new SchemaField(")
+                    .append(quote(field[0])).append(", ")
+                    .append(quote(field[1])).append(", ")
+                    .append(quote(field[2])).append(", ")
+                    .append(field[3]).append(", ")
+                    .append(quote(field[4])).append(",\n")
+                    .append("                ")
+                    .append(field[5]).append(", ")
+                    .append(field[6]).append("));\n");
+        }
+        out.append("        return new TelemetrySchema(\n");
+        appendSettings(out, schema);
+        out.append("                fields);\n")
+                .append("    }\n");
+        for (int i = 0; i < fields.size(); i++) {
+            String type = fields.get(i)[1];
+            String parameter =
+                    type.equals("long")
+                            ? "long"
+                            : type.equals("string") ? "CharSequence" : "double";
+            out.append("\n    /**\n")
+                    .append("     * Put ").append(fields.get(i)[0]).append(".\n")
+                    .append("     */\n")
+                    .append("    public void ").append(methods.get(i)).append('(')
+                    .append(parameter).append(" value) {\n")
+                    .append("        bus.put(handles[").append(constants.get(i))
+                    .append("], value);\n")
+                    .append("    }\n");
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static void appendSettings(StringBuilder out, Map<?, ?> schema) {
+        /*
+         * Same defaults and clamping as TelemetrySchema.fromConfig. Missing keys use the
+         * library constants, so the generated file follows later default changes.
+         */
+        int maxRateHz = (int) number(schema, "max_rate_hz", 100);
+        Object sampleBuffer = schema.get("sample_buffer");
+        int udpRateHz = (int) number(schema, "udp_rate_hz", 0);
+        String[] settings = {
+            Integer.toString((int) number(schema, "port", 5599)),
+            Boolean.toString(bool(schema, "strict", false)),
+            Integer.toString(maxRateHz > 0 ? maxRateHz : 100),
+            sampleBuffer instanceof Double && (Double) sampleBuffer > 0
+                    ? Integer.toString(((Double) sampleBuffer).intValue())
+                    : "TelemetryServer.DEFAULT_SAMPLE_BUFFER",
+            budget(schema, "history_kb", "TelemetrySchema.DEFAULT_HISTORY_KB"),
+            budget(schema, "history_100ms_kb", "TelemetryHistory.DEFAULT_ROLLUP_100MS_KB"),
+            budget(schema, "history_1s_kb", "TelemetryHistory.DEFAULT_ROLLUP_1S_KB"),
+            budget(schema, "recorder_mb", "TelemetrySchema.DEFAULT_RECORDER_MB"),
+            Boolean.toString(bool(schema, "self_stats", false)),
+            Boolean.toString(bool(schema, "async_publish", false)),
+            Integer.toString(Math.max(0, (int) number(schema, "udp_port", 0))),
+            quote(string(schema, "udp_group", "")),
+            udpRateHz > 0 ? Integer.toString(udpRateHz) : "UdpTransport.DEFAULT_RATE_HZ"
+        };
+        for (String setting : settings) {
+            out.append("                ").append(setting).append(",\n");
+        }
+    }
+
+    private static String budget(Map<?, ?> schema, String key, String defaultConstant) {
+        Object value = schema.get(key);
+        if (!(value instanceof Double)) {
+            return defaultConstant;
+        }
+        return Integer.toString(Math.max(0, ((Double) value).intValue()));
+    }
+
+    private static String string(Map<?, ?> object, String key, String fallback) {
+        Object value = object.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value instanceof Double && (Double) value == Math.rint((Double) value)) {
+            // org.json prints whole numbers without ".0".
+            return Long.toString(((Double) value).longValue());
+        }
+        return value.toString();
+    }
+
+    private static double number(Map<?, ?> object, String key, double fallback) {
+        Object value = object.get(key);
+        return value instanceof Double ? (Double) value : fallback;
+    }
+
+    private static boolean bool(Map<?, ?> object, String key, boolean fallback) {
+        Object value = object.get(key);
+        return value instanceof Boolean ? (Boolean) value : fallback;
+    }
+
+    private static String constantName(String name) {
+        // imu_yaw_deg -> IMU_YAW_DEG; anything that is not a letter or digit becomes '_'.
+        String constant = name.replaceAll("[^A-Za-z0-9]+", "_").toUpperCase(Locale.US);
+        return Character.isDigit(constant.charAt(0)) ? "F_" + constant : constant;
+    }
+
+    private static String camelName(String name) {
+        // imu_yaw_deg -> ImuYawDeg.
+        StringBuilder out = new StringBuilder(name.length());
+        for (String part : name.split("[^A-Za-z0-9]+")) {
+            if (!part.isEmpty()) {
+                out.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+            }
+        }
+        return out.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /**
+     * Just enough JSON for schema files: objects, arrays, strings, numbers, booleans, null.
+     */
+    private static final class JsonReader {
+        private final String text;
+        private int at;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object readDocument() {
+            Object value = readValue();
+            skipSpace();
+            if (at != text.length()) {
+                throw error("unexpected text after the schema");
+            }
+            return value;
+        }
+
+        private Object readValue() {
+            skipSpace();
+            if (at >= text.length()) {
+                throw error("unexpected end of JSON");
+            }
+            char c = text.charAt(at);
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                default:
+                    break;
+            }
+            if (text.startsWith("true", at)) {
+                at += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", at)) {
+                at += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", at)) {
+                at += 4;
+                return null;
+            }
+            int start = at;
+            while (at < text.length() && "+-.eE0123456789".indexOf(text.charAt(at)) >= 0) {
+                at++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, at));
+            } catch (NumberFormatException e) {
+                throw error("unexpected character '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            at++;
+            skipSpace();
+            if (peek() == '}') {
+                at++;
+                return object;
+            }
+            while (true) {
+                skipSpace();
+                if (peek() != '"') {
+                    throw error("expected a key");
+                }
+                String key = readString();
+                skipSpace();
+                expect(':');
+                object.put(key, readValue());
+                skipSpace();
+                if (peek() == ',') {
+                    at++;
+                    continue;
+                }
+                expect('}');
+                return object;
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> array = new ArrayList<>();
+            at++;
+            skipSpace();
+            if (peek() == ']') {
+                at++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipSpace();
+                if (peek() == ',') {
+                    at++;
+                    continue;
+                }
+                expect(']');
+                return array;
+            }
+        }
+
+        private String readString() {
+            StringBuilder out = new StringBuilder();
+            at++;
+            while (at < text.length()) {
+                char c = text.charAt(at++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = at < text.length() ? text.charAt(at++) : '"';
+                switch (escaped) {
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'u':
+                        if (at + 4 > text.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        out.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        at += 4;
+                        break;
+                    default:
+                        out.append(escaped);
+                        break;
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private char peek() {
+            return at < text.length() ? text.charAt(at) : '\0';
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            at++;
+        }
+
+        private void skipSpace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            // Line numbers, since the schema is edited by hand.
+            int line = 1;
+            for (int i = 0; i < at && i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new IllegalArgumentException("line " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * javac annotation processor that writes a Name_TelemetryBinding class for every class with
+ * @TelemetryField or @Tunable members.
+ *
+ * The binding is exactly the code a subsystem would write by hand: one
+ * bus.put(handle, source.member) per @TelemetryField and one registerDouble(...) per
+ * @Tunable. TelemetryBinder only looks the class up once, so nothing is reflected per loop.
+ *
+ * Registered in META-INF/services, so javac runs it when it is on the processor path.
+ */
+public final class TelemetryBindingProcessor extends AbstractProcessor {
+    private static final String FIELD_ANNOTATION = TelemetryField.class.getCanonicalName();
+    private static final String TUNABLE_ANNOTATION = Tunable.class.getCanonicalName();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(FIELD_ANNOTATION, TUNABLE_ANNOTATION));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        // Every class that declares at least one annotated member, in source order.
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (Element element : round.getElementsAnnotatedWith(TelemetryField.class)) {
+            types.add((TypeElement) element.getEnclosingElement());
+        }
+        for (Element element : round.getElementsAnnotatedWith(Tunable.class)) {
+            types.add((TypeElement) element.getEnclosingElement());
+        }
+        for (TypeElement type : types) {
+            generate(type);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        /*
+         * Check every annotated member first; a class with an error gets no binding, so
+         * TelemetryBinder.add(...) fails loudly instead of publishing half the fields.
+         */
+        if (type.getModifiers().contains(Modifier.PRIVATE) || !type.getTypeParameters().isEmpty()) {
+            error(type, "telemetry classes must not be private or generic");
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<String> tunables = new ArrayList<>();
+        boolean ok = true;
+        for (Element member : type.getEnclosedElements()) {
+            TelemetryField field = member.getAnnotation(TelemetryField.class);
+            if (field != null) {
+                String value = valueExpression(member);
+                ok &= value != null;
+                names.add(field.value().isEmpty() ? memberName(member) : field.value());
+                values.add(value);
+            }
+            Tunable tunable = member.getAnnotation(Tunable.class);
+            if (tunable != null) {
+                String registration = tunableRegistration(member, tunable);
+                ok &= registration != null;
+                tunables.add(registration);
+            }
+        }
+        if (!ok) {
+            return;
+        }
+
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String bindingName = flatName(type) + TelemetryBinder.BINDING_SUFFIX;
+        String source = type.getQualifiedName().toString();
+        StringBuilder out = new StringBuilder(2048 + names.size() * 120);
+        out.append("// Generated by TelemetryBindingProcessor from ")
+                .append(type.getSimpleName())
+                .append(". Do not edit.\n");
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import org.firstinspires.ftc.teamcode.telelib.FieldHandle;\n")
+                .append("import org.firstinspires.ftc.teamcode.telelib.LiveConfigRegistry;\n")
+                .append("import org.firstinspires.ftc.teamcode.telelib.TelemetryBinder;\n")
+                .append("import org.firstinspires.ftc.teamcode.telelib.TelemetryBus;\n")
+                .append("import org.firstinspires.ftc.teamcode.telelib.TelemetryConfigurable;\n")
+                .append("import org.firstinspires.ftc.teamcode.telelib.TelemetryPublisher;\n\n")
+                .append("/**\n")
+                .append(" * @TelemetryField and @Tunable members of ")
+                .append(type.getSimpleName())
+                .append(" (used by TelemetryBinder).\n")
+                .append(" */\n")
+                .append("public final class ")
+                .append(bindingName)
+                .append(" implements TelemetryPublisher, TelemetryConfigurable {\n")
+                .append("    private final ")
+                .append(source)
+                .append(" source;\n")
+                .append("    private final FieldHandle[] handles = new FieldHandle[")
+                .append(names.size())
+                .append("];\n")
+                .append("    private TelemetryBus bus;\n\n")
+                .append("    public ")
+                .append(bindingName)
+                .append('(')
+                .append(source)
+                .append(" source) {\n")
+                .append("        this.source = source;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void publishTelemetry(TelemetryBus bus) {\n")
+                .append("        if (bus != this.bus) {\n")
+                .append("            resolve(bus);\n")
+                .append("        }\n")
+                .append("        ")
+                .append(source)
+                .append(" source = this.source;\n")
+                .append("        FieldHandle[] handles = this.handles;\n");
+        for (int i = 0; i < values.size(); i++) {
+            out.append("        bus.put(handles[")
+                    .append(i)
+                    .append("], ")
+                    .append(values.get(i))
+                    .append(");\n");
+        }
+        // Kept out of publishTelemetry so the hot method stays small enough to inline.
+        out.append("    }\n\n")
+                .append("    private void resolve(TelemetryBus bus) {\n")
+                .append("        // First publish on this bus: resolve every field once.\n");
+        for (int i = 0; i < names.size(); i++) {
+            out.append("        handles[")
+                    .append(i)
+                    .append("] = bus.field(")
+                    .append(quote(names.get(i)))
+                    .append(");\n");
+        }
+        out.append("        this.bus = bus;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void registerTunables(LiveConfigRegistry config) {\n")
+                .append("        ")
+                .append(source)
+                .append(" source = this.source;\n");
+        for (String registration : tunables) {
+            out.append(registration);
+        }
+        out.append("    }\n")
+                .append("}\n");
+
+        String qualified = packageName.isEmpty() ? bindingName : packageName + "." + bindingName;
+        try (Writer writer =
+                processingEnv.getFiler().createSourceFile(qualified, type).openWriter()) {
+            writer.write(out.toString());
+        } catch (IOException e) {
+            error(type, "cannot write " + qualified + ": " + e.getMessage());
+        }
+    }
+
+    private String valueExpression(Element member) {
+        // The value to put, converted to one of the put(FieldHandle, ...) overloads.
+        if (member.getModifiers().contains(Modifier.PRIVATE)) {
+            error(member, "@TelemetryField members must not be private");
+            return null;
+        }
+        TypeMirror type;
+        String read;
+        if (member.getKind() == ElementKind.FIELD) {
+            type = member.asType();
+            read = "source." + member.getSimpleName();
+        } else {
+            ExecutableElement method = (ExecutableElement) member;
+            if (!method.getParameters().isEmpty()) {
+                error(member, "@TelemetryField methods must not take parameters");
+                return null;
+            }
+            type = method.getReturnType();
+            read = "source." + member.getSimpleName() + "()";
+        }
+        switch (type.getKind()) {
+            case DOUBLE:
+            case FLOAT:
+            case LONG:
+            case INT:
+            case SHORT:
+            case BYTE:
+                return read;
+            case BOOLEAN:
+                return read + " ? 1L : 0L";
+            case DECLARED:
+                Element element = processingEnv.getTypeUtils().asElement(type);
+                if (element.getKind() == ElementKind.ENUM) {
+                    return "TelemetryBinder.name(" + read + ")";
+                }
+                TypeMirror text =
+                        processingEnv
+                                .getElementUtils()
+                                .getTypeElement("java.lang.CharSequence")
+                                .asType();
+                if (processingEnv.getTypeUtils().isAssignable(type, text)) {
+                    return read;
+                }
+                break;
+            default:
+                break;
+        }
+        error(member, "@TelemetryField type must be a number, boolean, CharSequence or enum");
+        return null;
+    }
+
+    private String tunableRegistration(Element member, Tunable tunable) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (member.getKind() != ElementKind.FIELD
+                || member.asType().getKind() != TypeKind.DOUBLE
+                || modifiers.contains(Modifier.PRIVATE)
+                || modifiers.contains(Modifier.FINAL)) {
+            error(member, "@Tunable fields must be double, not private and not final");
+            return null;
+        }
+        String field = "source." + member.getSimpleName();
+        String name = tunable.value().isEmpty() ? memberName(member) : tunable.value();
+        return "        config.registerDouble(\n"
+                + "                " + quote(name) + ",\n"
+                + "                () -> " + field + ",\n"
+                + "                value -> " + field + " = value,\n"
+                + "                " + literal(tunable.min()) + ",\n"
+                + "                " + literal(tunable.max()) + ");\n";
+    }
+
+    private static String memberName(Element member) {
+        return member.getSimpleName().toString();
+    }
+
+    private static String flatName(TypeElement type) {
+        // Outer.Inner -> Outer_Inner, matching TelemetryBinder's lookup of Outer$Inner.
+        String name = type.getSimpleName().toString();
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private static PackageElement packageOf(Element element) {
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private static String literal(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return Double.toString(value);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
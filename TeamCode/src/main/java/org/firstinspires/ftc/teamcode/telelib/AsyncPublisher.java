@@ -0,0 +1,130 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Publish thread for "async_publish": true.
+ *
+ * Like a mail slot: the loop thread drops the finished snapshot in and walks away. The
+ * "TelemetryPublish" thread takes it out and does the slow part (sample ring and client
+ * wakeups, history, recorder, _telelib.* fields). offer() never blocks or allocates; when
+ * the queue is full it returns false and the caller drops that loop's snapshot. If the sink
+ * throws, the thread stops, reports the exception right away and offer() returns false
+ * from then on.
+ */
+final class AsyncPublisher implements AutoCloseable {
+    private final SnapshotQueue queue;
+    private final Consumer<TelemetrySnapshot> sink;
+    private final Consumer<RuntimeException> onFailure;
+    private volatile boolean running;
+    /*
+     * Set while the publish thread is parked, so offer() only unparks when it has to.
+     * offer() writes the queue tail, then reads this; the thread writes this, then reads the
+     * tail. Both are volatile, so at least one side sees the other and a wakeup is never
+     * lost, which is why the thread can park without a timeout.
+     */
+    private volatile boolean parked;
+    private volatile RuntimeException failure;
+    private volatile Thread thread;
+
+    /**
+     * Create a publisher whose thread passes each queued snapshot to sink.
+     *
+     * The sink receives the queue's reference and must release it. onFailure is called on
+     * the publish thread with whatever stopped it.
+     */
+    AsyncPublisher(
+            int capacity,
+            Consumer<TelemetrySnapshot> sink,
+            Consumer<RuntimeException> onFailure) {
+        this.queue = new SnapshotQueue(capacity);
+        this.sink = sink;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Start the publish thread.
+     */
+    void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread started = new Thread(this::runPublishLoop, "TelemetryPublish");
+        started.setDaemon(true);
+        thread = started;
+        started.start();
+    }
+
+    /**
+     * Hand over the caller's reference (loop thread only). False when the thread is not
+     * running or is too far behind; the caller keeps its reference then.
+     */
+    boolean offer(TelemetrySnapshot snapshot) {
+        if (!running || !queue.offer(snapshot)) {
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Why the publish thread stopped early, or null.
+     */
+    RuntimeException failure() {
+        return failure;
+    }
+
+    /**
+     * Publish what is queued and stop the thread.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runPublishLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                TelemetrySnapshot snapshot = queue.poll();
+                if (snapshot == null) {
+                    // Say we are parking, then look once more so a racing offer() is not missed.
+                    parked = true;
+                    if (running && queue.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                    continue;
+                }
+                sink.accept(snapshot);
+            }
+        } catch (RuntimeException e) {
+            // Refuse offers first, so the loop thread stops queueing before it sees failure.
+            running = false;
+            failure = e;
+            onFailure.accept(e);
+        } finally {
+            running = false;
+            // Anything still queued is dropped; give the buffers back to the pool.
+            TelemetrySnapshot left;
+            while ((left = queue.poll()) != null) {
+                left.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Encoder for the binary wire protocol (see "Binary protocol" in the telelib README).
+ *
+ * Every server message is a frame: u32 big-endian length, u8 type, payload.
+ * The length counts the type byte plus the payload.
+ */
+final class BinaryFrames {
+    /** Frame type: one text reply (OK, CFG ..., ERR ...) without the newline. */
+    static final int TYPE_TEXT = 'T';
+    /** Frame type: one snapshot (sequence, timestamp, field values). */
+    static final int TYPE_DATA = 'D';
+    /** Frame type: only the fields that changed since the previous frame (delta mode). */
+    static final int TYPE_DELTA = 'd';
+
+    /** Value tag: no value this loop. */
+    static final int TAG_EMPTY = 0;
+    /** Value tag: 8-byte big-endian IEEE 754 double. */
+    static final int TAG_DOUBLE = 1;
+    /** Value tag: zigzag varint long. */
+    static final int TAG_LONG = 2;
+    /** Value tag: varint byte length + UTF-8 text. */
+    static final int TAG_STRING = 3;
+    /** Value tag: zigzag varint count of the field's quantum steps. */
+    static final int TAG_QUANTIZED = 4;
+
+    // Beyond this many quantum steps we send the raw double instead.
+    private static final double MAX_QUANTIZED_STEPS = (double) (1L << 52);
+
+    private BinaryFrames() {}
+
+    /**
+     * Append one TEXT frame (trailing newline, if any, is dropped).
+     */
+    static void writeText(FrameBuffer out, CharSequence text) {
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == '\n') {
+            length--;
+        }
+        int start = beginFrame(out, TYPE_TEXT);
+        // Encode in place: subSequence would copy every reply line into a new String.
+        out.appendUtf8(text, 0, length);
+        endFrame(out, start);
+    }
+
+    /**
+     * Append one DATA frame with the requested fields of a snapshot (-1 entries are left out).
+     */
+    static void writeData(
+            FrameBuffer out, TelemetrySnapshot snapshot, int[] fields, double[] quanta) {
+        int start = beginFrame(out, TYPE_DATA);
+        out.appendVarint(snapshot.sequence());
+        out.appendVarint(snapshot.timestampUs());
+        int count = 0;
+        for (int field : fields) {
+            if (field >= 0) {
+                count++;
+            }
+        }
+        out.appendVarint(count);
+        for (int field : fields) {
+            if (field >= 0) {
+                out.appendVarint(field);
+                writeValue(out, snapshot, field, quanta[field]);
+            }
+        }
+        endFrame(out, start);
+    }
+
+    /**
+     * Append one DELTA frame: a bitmap over the subscribed fields, then only the set ones.
+     *
+     * Bit i of the bitmap (byte i / 8, bit i % 8) stands for fields[i].
+     */
+    static void writeDelta(
+            FrameBuffer out,
+            TelemetrySnapshot snapshot,
+            int[] fields,
+            byte[] changed,
+            double[] quanta) {
+        int start = beginFrame(out, TYPE_DELTA);
+        out.appendVarint(snapshot.sequence());
+        out.appendVarint(snapshot.timestampUs());
+        int bitmapBytes = (fields.length + 7) >>> 3;
+        out.appendVarint(bitmapBytes);
+        for (int i = 0; i < bitmapBytes; i++) {
+            out.appendByte(changed[i]);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if ((changed[i >>> 3] & (1 << (i & 7))) != 0) {
+                writeValue(out, snapshot, fields[i], quanta[fields[i]]);
+            }
+        }
+        endFrame(out, start);
+    }
+
+    /**
+     * Append the tag and value for one field.
+     */
+    static void writeValue(FrameBuffer out, TelemetrySnapshot snapshot, int field, double quantum) {
+        switch (snapshot.kind(field)) {
+            case TelemetrySnapshot.KIND_DOUBLE:
+                double value = snapshot.getDouble(field);
+                if (quantum > 0) {
+                    double steps = Math.rint(value / quantum);
+                    if (Math.abs(steps) < MAX_QUANTIZED_STEPS) {
+                        out.appendByte(TAG_QUANTIZED);
+                        out.appendZigZag((long) steps);
+                        return;
+                    }
+                }
+                out.appendByte(TAG_DOUBLE);
+                out.appendDouble(value);
+                return;
+            case TelemetrySnapshot.KIND_LONG:
+                out.appendByte(TAG_LONG);
+                out.appendZigZag(snapshot.getLong(field));
+                return;
+            case TelemetrySnapshot.KIND_STRING:
+                out.appendByte(TAG_STRING);
+                out.appendLengthPrefixedUtf8(snapshot.get(field));
+                return;
+            default:
+                out.appendByte(TAG_EMPTY);
+        }
+    }
+
+    private static int beginFrame(FrameBuffer out, int type) {
+        // Reserve the length; it is patched in endFrame once the payload is known.
+        int start = out.size();
+        out.appendInt(0);
+        out.appendByte(type);
+        return start;
+    }
+
+    private static void endFrame(FrameBuffer out, int start) {
+        out.setInt(start, out.size() - start - 4);
+    }
+}
@@ -0,0 +1,1041 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One connected dashboard: its subscription, command parsing, and outbound queue.
+ *
+ * Everything here runs on the TelemetryServer IO thread. Reads and writes never block:
+ * bytes that the socket cannot take yet wait in the outbound buffer. While that buffer is
+ * above its high-water mark DATA frames are skipped and further commands wait unread, so
+ * replies cannot pile up either. Long HIST and RESUME replies go out a chunk at a time the
+ * same way.
+ */
+final class ClientSession implements AutoCloseable {
+    // Skip new DATA frames (and hold back commands) while this many bytes wait to be sent.
+    private static final int HIGH_WATER_BYTES = 64 * 1024;
+    // Outbound buffer size; a buffer grown for a burst goes back to this once it drains.
+    private static final int OUTBOUND_BYTES = 16 * 1024;
+    // Leave bulk fields out above this many queued bytes, and normal fields above the next.
+    private static final int SHED_BULK_BYTES = 16 * 1024;
+    private static final int SHED_NORMAL_BYTES = 32 * 1024;
+    // Bring shed classes back, one per frame, once the queue is below this.
+    private static final int RESTORE_BYTES = 4 * 1024;
+    // Drop the client when queued bytes make no progress for this long.
+    private static final long WRITE_TIMEOUT_NANOS = 5_000_000_000L;
+    // Longest command line we accept.
+    private static final int MAX_LINE_BYTES = 8 * 1024;
+    // Most points one HIST reply sends per field (the newest ones are kept).
+    private static final int MAX_HIST_POINTS = 10_000;
+    // HIST points per queued chunk; the next chunk waits while the queue is above high-water.
+    private static final int HIST_CHUNK_POINTS = 256;
+    // RESUME samples per queued BATCH; the next batch waits the same way.
+    private static final int RESUME_CHUNK_SAMPLES = 64;
+    private static final NumericFormat HIST_FORMAT = NumericFormat.compile("%.4f");
+
+    private final TelemetryServer server;
+    private final SocketChannel channel;
+    private final String remoteAddress;
+    private SelectionKey key;
+    private final ByteBuffer inbound = ByteBuffer.allocate(MAX_LINE_BYTES);
+    private ByteBuffer outbound = ByteBuffer.allocate(OUTBOUND_BYTES);
+    // Reused every frame so steady-state sends do not allocate.
+    private final StringBuilder line = new StringBuilder(256);
+    private final StringBuilder header = new StringBuilder(32);
+    private final FrameBuffer frame = new FrameBuffer(256);
+    private int[] fields = new int[0];
+    // Arrays.hashCode(fields), the subscription part of the frame cache key.
+    private int fieldsHash = Arrays.hashCode(fields);
+    // Time between frames: 1 / rate, capped by max_rate_hz and lowered by the rate
+    // controller while the link is congested. Not rounded to milliseconds.
+    private long intervalNanos = 50_000_000L;
+    // AIMD send rate from this client's backlog (only with "SUB ... adapt=1").
+    private final RateController rateController = new RateController();
+    // When the next frame is due (System.nanoTime). Advanced by intervalNanos so it never drifts.
+    private long nextDueNanos;
+    private boolean lossless;
+    // Binary framing negotiated with "HELLO binary=1".
+    private boolean binary;
+    // "HELLO seq=1": text DATA/DELTA lines start with "seq t_us", lost samples get GAP lines.
+    private boolean sequenced;
+    // Delta mode ("SUB ... delta=1"): keyframes plus changed fields only.
+    private DeltaEncoder delta;
+    // Per-field aggregation ("SUB name:max ..."), or null when every field sends its latest value.
+    private WindowAggregator window;
+    // Per-field rate caps and priority classes of the subscription (set by SUB).
+    private FieldScheduler scheduler;
+    // FieldScheduler.SHED_* level currently applied to this client's frames.
+    private int shedLevel;
+    // "SUB ... shed=1": tell the client with SHED lines when shedLevel changes.
+    private boolean shedNotices;
+    // Newest snapshot sequence already sent to this client.
+    private long lastSequence = -1;
+    // When the queued bytes last shrank (or started queueing).
+    private long lastWriteProgressNanos;
+    // When the outbound buffer last went from empty to non-empty (backlog age).
+    private long queuedSinceNanos;
+    private long droppedFrames;
+    // Published snapshots replaced by a newer one before this client's next frame.
+    private long coalescedFrames;
+    private long bytesSent;
+    private int maxQueuedBytes;
+    // Measured send timing for SessionStats (moving averages over about 16 frames).
+    private long sentFrames;
+    private long lastSendNanos;
+    private long lastIntervalNanos;
+    private double averageIntervalNanos;
+    private double jitterNanos;
+    // Complete command lines wait in inbound until the replies drain below the high-water mark.
+    private boolean commandsWaiting;
+    // HIST reply still being sent, or null.
+    private HistReply hist;
+    // Newest sequence a RESUME reply still has to send (lastSequence is its cursor), or -1.
+    private long resumeThrough = -1;
+    private boolean open = true;
+
+    ClientSession(TelemetryServer server, SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+        this.remoteAddress = String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Number of DATA frames skipped because this client was not keeping up.
+     */
+    long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * True once the client has subscribed to at least one field.
+     */
+    boolean isSubscribed() {
+        return fields.length > 0;
+    }
+
+    /**
+     * True when this client's next frame is due.
+     */
+    boolean isDue(long nowNanos) {
+        return fields.length > 0 && nowNanos - nextDueNanos >= 0;
+    }
+
+    /**
+     * When the next frame is due (System.nanoTime).
+     */
+    long nextDueNanos() {
+        return nextDueNanos;
+    }
+
+    /**
+     * True when the ring holds a snapshot this client has not been sent yet.
+     */
+    boolean hasNewData(long head) {
+        return head > lastSequence;
+    }
+
+    /**
+     * True while bytes are waiting for the socket.
+     */
+    boolean hasPendingOutput() {
+        return outbound.position() > 0;
+    }
+
+    /**
+     * Send the next frame (call only when isDue and hasNewData).
+     */
+    void send(TelemetrySnapshot snapshot, long nowNanos) {
+        if (replying()) {
+            // Frames (and RATE/SHED lines) wait so the HIST or RESUME reply stays together.
+            advanceSchedule(nowNanos);
+            droppedFrames++;
+            server.metrics().framesDropped.increment();
+            return;
+        }
+        adaptRate(nowNanos);
+        advanceSchedule(nowNanos);
+        if (outbound.position() > HIGH_WATER_BYTES) {
+            // This client is behind; skip the frame rather than queue stale data.
+            droppedFrames++;
+            server.metrics().framesDropped.increment();
+            return;
+        }
+        updateShedLevel();
+        // Subscribed fields minus shed classes and capped fields that are not due (-1).
+        // Lossless batches and delta keyframes carry every unshed field.
+        long nowMs = nowNanos / 1_000_000L;
+        boolean everyField = lossless || (delta != null && delta.keyframeDue(nowMs));
+        int[] sendFields = scheduler.select(nowNanos, shedLevel, everyField);
+        if (sendFields == null) {
+            // Only capped fields are subscribed and none of them is due yet.
+            return;
+        }
+        long encodeStart = System.nanoTime();
+        FrameBuffer out = frame;
+        frame.clear();
+        if (lossless) {
+            // Every sample since the last frame, batched into one write.
+            if (!encodeBatch(sendFields, sequenced)) {
+                return;
+            }
+        } else {
+            if (window != null) {
+                // Min/max/mean over every sample since the previous frame, not just the latest.
+                snapshot = window.fold(server.ring(), lastSequence, snapshot, sendFields);
+            } else if (lastSequence >= 0 && snapshot.sequence() - lastSequence > 1) {
+                long skipped = snapshot.sequence() - lastSequence - 1;
+                coalescedFrames += skipped;
+                server.metrics().framesCoalesced.add(skipped);
+            }
+            lastSequence = snapshot.sequence();
+            if (delta != null) {
+                // Only the fields that changed since this client's previous frame.
+                if (binary) {
+                    delta.writeBinary(frame, snapshot, sendFields, server.quanta(), nowMs);
+                } else {
+                    delta.writeText(frame, line, snapshot, sendFields, sequenced, nowMs);
+                }
+            } else if (window != null) {
+                // Aggregates are this session's own; nothing to share through the cache.
+                if (binary) {
+                    BinaryFrames.writeData(frame, snapshot, sendFields, server.quanta());
+                } else {
+                    line.setLength(0);
+                    line.append("DATA ");
+                    if (sequenced) {
+                        snapshot.appendStamp(line);
+                    }
+                    snapshot.appendCsv(sendFields, line);
+                    line.append('\n');
+                    frame.appendUtf8(line);
+                }
+            } else {
+                // Full frame: sessions with the same subscription share one encoded copy.
+                out =
+                        server.frameCache()
+                                .frame(
+                                        snapshot,
+                                        sendFields,
+                                        scheduler.selectedHash(),
+                                        binary,
+                                        sequenced);
+            }
+        }
+        server.metrics().encode.record(System.nanoTime() - encodeStart);
+        enqueue(out.array(), 0, out.size());
+        recordSend(nowNanos);
+    }
+
+    void checkWriteTimeout(long nowNanos) {
+        // A peer that stopped reading (or vanished) keeps bytes queued forever.
+        if (outbound.position() > 0 && nowNanos - lastWriteProgressNanos > WRITE_TIMEOUT_NANOS) {
+            close();
+        }
+    }
+
+    /**
+     * Requested and measured send rate for this client.
+     */
+    SessionStats stats() {
+        double measuredHz = averageIntervalNanos > 0 ? 1e9 / averageIntervalNanos : 0.0;
+        return new SessionStats(
+                remoteAddress,
+                fields.length > 0 ? rateController.requestedHz() : 0.0,
+                measuredHz,
+                jitterNanos / 1e6,
+                sentFrames,
+                droppedFrames,
+                bytesSent,
+                coalescedFrames,
+                outbound.position(),
+                maxQueuedBytes,
+                shedLevel,
+                fields.length > 0 ? rateController.effectiveHz() : 0.0);
+    }
+
+    void onReadable() {
+        /*
+         * Read whatever arrived and handle every complete command line.
+         */
+        try {
+            int read = channel.read(inbound);
+            if (read < 0) {
+                close();
+                return;
+            }
+            handleBufferedCommands();
+        } catch (IOException ignored) {
+            close();
+        }
+    }
+
+    void onWritable() {
+        flush();
+        if (open && hist != null && outbound.position() <= HIGH_WATER_BYTES) {
+            continueHist();
+        }
+        if (open && resumeThrough >= 0 && outbound.position() <= HIGH_WATER_BYTES) {
+            continueResume();
+        }
+        if (open && commandsWaiting && !replying() && outbound.position() <= HIGH_WATER_BYTES) {
+            // Replies drained: carry on with the commands that arrived meanwhile.
+            handleBufferedCommands();
+        }
+    }
+
+    private void handleBufferedCommands() {
+        /*
+         * Handle the complete command lines in inbound. Stop while the replies are above the
+         * high-water mark or a HIST/RESUME reply is still going out; the rest stay buffered,
+         * and flush() stops reading from the socket until onWritable() picks them up again.
+         */
+        inbound.flip();
+        int start = inbound.position();
+        commandsWaiting = false;
+        for (int i = start; i < inbound.limit(); i++) {
+            if (inbound.get(i) == '\n') {
+                if (outbound.position() > HIGH_WATER_BYTES || replying()) {
+                    commandsWaiting = true;
+                    break;
+                }
+                String command =
+                        new String(inbound.array(), start, i - start, StandardCharsets.UTF_8);
+                handleCommand(command.trim());
+                if (!open) {
+                    return;
+                }
+                start = i + 1;
+            }
+        }
+        inbound.position(start);
+        inbound.compact();
+        if (!inbound.hasRemaining() && !commandsWaiting) {
+            // A "line" this long is not a command; give up on this client.
+            close();
+            return;
+        }
+        updateInterest();
+    }
+
+    private void adaptRate(long nowNanos) {
+        // Back off while bytes wait for this client; creep back up once they drain.
+        int queued = outbound.position();
+        rateController.update(nowNanos, queued, queued > 0 ? nowNanos - queuedSinceNanos : 0);
+        intervalNanos = rateController.intervalNanos();
+        if (rateController.takeReport(nowNanos)) {
+            // The dashboard can show the rate it really gets next to the one it asked for.
+            sendLine(
+                    String.format(
+                            Locale.US,
+                            "RATE %.1f %.1f\n",
+                            rateController.effectiveHz(),
+                            rateController.requestedHz()));
+        }
+    }
+
+    private void advanceSchedule(long nowNanos) {
+        // Next deadline follows the previous one, so 30 Hz stays 30 Hz on average.
+        nextDueNanos += intervalNanos;
+        if (nowNanos - nextDueNanos >= 0) {
+            // More than a whole interval behind (long wait for data): restart from now.
+            nextDueNanos = nowNanos + intervalNanos;
+        }
+    }
+
+    private void updateShedLevel() {
+        /*
+         * Leave the lower classes out as the send queue grows (bulk first, then normal)
+         * and bring them back one class per frame once it has drained. The subscription's
+         * highest class is never shed; only the high-water mark stops whole frames.
+         */
+        int queued = outbound.position();
+        int level = shedLevel;
+        if (queued > SHED_NORMAL_BYTES) {
+            level = FieldScheduler.SHED_NORMAL;
+        } else if (queued > SHED_BULK_BYTES) {
+            level = Math.max(level, FieldScheduler.SHED_BULK);
+        } else if (queued < RESTORE_BYTES && level > FieldScheduler.SHED_NONE) {
+            level--;
+        }
+        level = Math.min(level, scheduler.maxShedLevel());
+        if (level != shedLevel) {
+            shedLevel = level;
+            if (shedNotices) {
+                // Tell the dashboard which classes its frames leave out from now on.
+                sendLine("SHED " + FieldScheduler.shedClasses(level) + "\n");
+            }
+        }
+    }
+
+    private void recordSend(long nowNanos) {
+        /*
+         * Moving averages of the send interval and of how much it varies from one
+         * frame to the next (the same jitter estimate RTP uses).
+         */
+        sentFrames++;
+        server.metrics().framesSent.increment();
+        if (lastSendNanos != 0) {
+            long interval = nowNanos - lastSendNanos;
+            if (averageIntervalNanos == 0) {
+                averageIntervalNanos = interval;
+            } else {
+                averageIntervalNanos += (interval - averageIntervalNanos) / 16.0;
+            }
+            if (lastIntervalNanos != 0) {
+                jitterNanos += (Math.abs(interval - lastIntervalNanos) - jitterNanos) / 16.0;
+            }
+            lastIntervalNanos = interval;
+        }
+        lastSendNanos = nowNanos;
+    }
+
+    private boolean encodeBatch(int[] fields, boolean markGaps) {
+        return encodeBatch(fields, markGaps, server.ring().head(), Integer.MAX_VALUE);
+    }
+
+    private boolean encodeBatch(int[] fields, boolean markGaps, long through, int maxCount) {
+        /*
+         * BATCH count, then one SAMPLE line per published snapshot after lastSequence, up
+         * to through or about maxCount lines; lastSequence moves to the last one covered.
+         * Binary sessions get one DATA frame per sample instead (same single write).
+         * Samples that already fell out of the ring are skipped, or with markGaps
+         * reported in place as "GAP first last" (counted in the BATCH like a SAMPLE).
+         */
+        SnapshotRing ring = server.ring();
+        long from = Math.max(lastSequence + 1, ring.oldest());
+        // First sequence the client has not been sent (or told about) yet.
+        long next = lastSequence + 1;
+        line.setLength(0);
+        int count = 0;
+        long seq;
+        for (seq = from; seq <= through && count < maxCount; seq++) {
+            TelemetrySnapshot sample = ring.acquire(seq);
+            if (sample == null) {
+                continue;
+            }
+            try {
+                if (markGaps && seq > next) {
+                    appendGap(next, seq - 1);
+                    count++;
+                }
+                next = seq + 1;
+                if (binary) {
+                    BinaryFrames.writeData(frame, sample, fields, server.quanta());
+                    count++;
+                    continue;
+                }
+                line.append("SAMPLE ");
+                sample.appendStamp(line);
+                sample.appendCsv(fields, line);
+                line.append('\n');
+                count++;
+            } finally {
+                sample.release();
+            }
+        }
+        if (seq > through && markGaps && through >= next) {
+            appendGap(next, through);
+            count++;
+        }
+        lastSequence = seq - 1;
+        if (count == 0) {
+            return false;
+        }
+        if (binary) {
+            return true;
+        }
+        header.setLength(0);
+        header.append("BATCH ").append(count).append('\n');
+        frame.appendUtf8(header);
+        frame.appendUtf8(line);
+        return true;
+    }
+
+    private void appendGap(long first, long last) {
+        String gap = "GAP " + first + " " + last;
+        if (binary) {
+            BinaryFrames.writeText(frame, gap);
+        } else {
+            line.append(gap).append('\n');
+        }
+    }
+
+    private void sendLine(CharSequence text) {
+        frame.clear();
+        if (binary) {
+            // After the switch every reply travels inside a TEXT frame.
+            BinaryFrames.writeText(frame, text);
+        } else {
+            frame.appendUtf8(text);
+        }
+        enqueue(frame.array(), 0, frame.size());
+    }
+
+    private void enqueue(byte[] bytes, int offset, int length) {
+        /*
+         * Append to the outbound buffer and push as much as the socket will take now.
+         */
+        if (!open) {
+            return;
+        }
+        if (outbound.position() == 0) {
+            lastWriteProgressNanos = System.nanoTime();
+            queuedSinceNanos = lastWriteProgressNanos;
+        }
+        if (outbound.remaining() < length) {
+            // Grow once; steady-state frames stay below the high-water mark.
+            int capacity = Math.max(outbound.capacity() * 2, outbound.position() + length);
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            outbound.flip();
+            bigger.put(outbound);
+            outbound = bigger;
+        }
+        outbound.put(bytes, offset, length);
+        maxQueuedBytes = Math.max(maxQueuedBytes, outbound.position());
+        flush();
+    }
+
+    private void flush() {
+        if (!open) {
+            return;
+        }
+        try {
+            outbound.flip();
+            int written = channel.write(outbound);
+            outbound.compact();
+            if (written > 0) {
+                lastWriteProgressNanos = System.nanoTime();
+                bytesSent += written;
+                server.metrics().bytesSent.add(written);
+            }
+            if (outbound.position() == 0 && outbound.capacity() > OUTBOUND_BYTES) {
+                // A large reply or burst is gone; do not keep its buffer for the whole session.
+                outbound = ByteBuffer.allocate(OUTBOUND_BYTES);
+            }
+            updateInterest();
+        } catch (IOException ignored) {
+            close();
+        }
+    }
+
+    private void updateInterest() {
+        /*
+         * Read commands unless some are already waiting for replies to drain; ask for
+         * OP_WRITE while bytes wait, and while waiting commands or a HIST/RESUME reply
+         * need onWritable() to resume.
+         */
+        int ops = commandsWaiting ? 0 : SelectionKey.OP_READ;
+        if (outbound.position() > 0 || commandsWaiting || replying()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        if (key != null && key.isValid() && key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    private void handleCommand(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        // First word is the command, the rest are its arguments.
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.US);
+        String args = space < 0 ? "" : line.substring(space + 1).trim();
+        switch (command) {
+            case "HELLO":
+                handleHello(args);
+                return;
+            case "FIELDS":
+                // Send the list of all available fields.
+                sendFields();
+                return;
+            case "LISTCFG":
+                sendConfig();
+                return;
+            case "SET":
+                handleSet(args);
+                return;
+            case "SUB":
+                // Client wants to subscribe to specific fields.
+                parseSub(args);
+                sendLine("OK\n");
+                return;
+            case "HIST":
+                handleHist(args);
+                return;
+            case "RESUME":
+                handleResume(args);
+                return;
+            case "UDP":
+                handleUdp(args);
+                return;
+            case "STATS":
+                // telelib's own overhead and every client's queue, then OK.
+                sendLine(server.metrics().describe(server.collectSessionStats()));
+                return;
+            default:
+                // Extra commands (replay controls, ...) if the server has a handler.
+                CommandHandler handler = server.commandHandler();
+                String reply = handler == null ? null : handler.handle(command, args);
+                sendLine(reply == null ? "ERR unknown\n" : reply + "\n");
+        }
+    }
+
+    private void handleHello(String args) {
+        /*
+         * Plain HELLO keeps the text protocol. "HELLO binary=1" answers with the text line
+         * "BINARY 1", and from then on everything this server sends is a binary frame.
+         */
+        for (String part : args.split("\\s+")) {
+            if (part.startsWith("binary=") && isTrue(part.substring(7)) && !binary) {
+                sendLine("BINARY 1\n");
+                binary = true;
+                if (delta != null) {
+                    delta.reset();
+                }
+            } else if (part.startsWith("seq=")) {
+                sequenced = isTrue(part.substring(4));
+                if (sequenced) {
+                    // Run id and newest sequence: what a later RESUME can refer to.
+                    sendLine("SEQ " + server.runId() + " " + server.ring().head() + "\n");
+                }
+            }
+        }
+        sendFields();
+    }
+
+    private void sendFields() {
+        /*
+         * Send the full field catalog as a single FIELDS line.
+         */
+        // Format "name,type,unit" for each field.
+        List<SchemaField> defs = server.catalog().getFields();
+        StringBuilder out = new StringBuilder(defs.size() * 20);
+        out.append("FIELDS ");
+        for (int i = 0; i < defs.size(); i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            SchemaField def = defs.get(i);
+            out.append(def.name)
+                    .append(',')
+                    .append(def.type)
+                    .append(',')
+                    .append(def.unit == null ? "" : def.unit);
+            if (binary) {
+                // Binary clients also need the quantum to decode fixed-point values.
+                out.append(',').append(def.quantum);
+            }
+        }
+        out.append('\n');
+        sendLine(out.toString());
+    }
+
+    private void sendConfig() {
+        /*
+         * Send live-config entries (CFG line) or an empty list.
+         */
+        ConfigRegistry configRegistry = server.configRegistry();
+        if (configRegistry == null) {
+            sendLine("CFG \n");
+            return;
+        }
+        List<ConfigRegistry.ConfigEntry> entries = configRegistry.list();
+        StringBuilder out = new StringBuilder(entries.size() * 24);
+        out.append("CFG ");
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            ConfigRegistry.ConfigEntry entry = entries.get(i);
+            out.append(entry.getName())
+                    .append(',')
+                    .append(entry.getType())
+                    .append(',')
+                    .append(entry.getMin())
+                    .append(',')
+                    .append(entry.getMax());
+        }
+        out.append('\n');
+        sendLine(out.toString());
+    }
+
+    private void handleSet(String args) {
+        /*
+         * Apply SET name=value to the ConfigRegistry.
+         */
+        ConfigRegistry configRegistry = server.configRegistry();
+        if (configRegistry == null) {
+            sendLine("ERR no-config\n");
+            return;
+        }
+        String[] parts = args.split("=", 2);
+        if (parts.length != 2) {
+            sendLine("ERR bad-format\n");
+            return;
+        }
+        String name = parts[0].trim();
+        String value = parts[1].trim();
+        long start = System.nanoTime();
+        boolean ok = configRegistry.set(name, value);
+        server.metrics().set.record(System.nanoTime() - start);
+        sendLine(ok ? "OK\n" : "ERR invalid\n");
+    }
+
+    private void handleResume(String args) {
+        /*
+         * RESUME seq (after a reconnect and SUB): send every retained snapshot after seq
+         * up to the current head, as lossless-style batches with GAP for the ones that aged
+         * out, then OK. Regular frames wait until then and continue from the newest snapshot.
+         */
+        if (fields.length == 0) {
+            sendLine("ERR no-sub\n");
+            return;
+        }
+        long sequence;
+        try {
+            sequence = Long.parseLong(args.trim());
+        } catch (NumberFormatException e) {
+            sendLine("ERR bad-format\n");
+            return;
+        }
+        if (sequence < 0 || sequence > server.ring().head()) {
+            // Newer than anything published here: a different run (robot restarted).
+            sendLine("ERR bad-seq\n");
+            return;
+        }
+        lastSequence = sequence;
+        resumeThrough = server.ring().head();
+        if (delta != null) {
+            // The client rebuilds its state from full samples; start over with a keyframe.
+            delta.reset();
+        }
+        continueResume();
+    }
+
+    private void continueResume() {
+        /*
+         * Queue the pending RESUME reply a batch at a time until it is done or the queue is
+         * above the high-water mark; onWritable() carries on from there. Samples that age
+         * out of the ring meanwhile are reported as GAP like any others.
+         */
+        while (open && outbound.position() <= HIGH_WATER_BYTES) {
+            if (lastSequence >= resumeThrough) {
+                resumeThrough = -1;
+                sendLine("OK\n");
+                return;
+            }
+            frame.clear();
+            if (encodeBatch(fields, true, resumeThrough, RESUME_CHUNK_SAMPLES)) {
+                enqueue(frame.array(), 0, frame.size());
+            }
+        }
+        updateInterest();
+    }
+
+    private void handleUdp(String args) {
+        /*
+         * UDP port: also send the server's UDP datagrams to this client's IP at port, for as
+         * long as this connection lasts. UDP 0 (or off) stops them. The TCP subscription,
+         * if any, is not touched.
+         */
+        UdpTransport udp = server.udp();
+        if (udp == null) {
+            sendLine("ERR no-udp\n");
+            return;
+        }
+        if (!udp.isOpen()) {
+            // No UDP socket (it failed to open or was closed); the TCP stream is unaffected.
+            sendLine("ERR udp-unavailable\n");
+            return;
+        }
+        int udpPort;
+        try {
+            udpPort = args.equalsIgnoreCase("off") ? 0 : Integer.parseInt(args.trim());
+        } catch (NumberFormatException e) {
+            sendLine("ERR bad-format\n");
+            return;
+        }
+        if (udpPort < 0 || udpPort > 65535) {
+            sendLine("ERR bad-format\n");
+            return;
+        }
+        if (udpPort == 0) {
+            udp.removePeer(this);
+        } else {
+            udp.addPeer(this, new InetSocketAddress(channel.socket().getInetAddress(), udpPort));
+        }
+        sendLine("OK\n");
+    }
+
+    private void handleHist(String args) {
+        /*
+         * HIST field1,field2 from=t_us to=t_us res=ms: one block per numeric field,
+         * "HIST name tier_ms count" then count "t_us min,max,mean,n" lines, then OK.
+         * Fields are queried one at a time as the reply goes out (see continueHist).
+         */
+        TelemetryHistory history = server.history();
+        if (history == null) {
+            sendLine("ERR no-history\n");
+            return;
+        }
+        String[] parts = args.split("\\s+");
+        long fromUs = 0;
+        long toUs = Long.MAX_VALUE;
+        long resolutionUs = 0;
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.startsWith("from=")) {
+                    fromUs = Long.parseLong(part.substring(5));
+                } else if (part.startsWith("to=")) {
+                    toUs = Long.parseLong(part.substring(3));
+                } else if (part.startsWith("res=")) {
+                    resolutionUs = Math.max(0, Long.parseLong(part.substring(4))) * 1000L;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendLine("ERR bad-format\n");
+            return;
+        }
+        FieldCatalog catalog = server.catalog();
+        String fieldList = parts[0];
+        boolean all = fieldList.equalsIgnoreCase("ALL") || fieldList.equals("*");
+        String[] names = all ? null : fieldList.split(",");
+        int count = all ? catalog.size() : names.length;
+        int[] indices = new int[count];
+        int found = 0;
+        for (int f = 0; f < count; f++) {
+            // Unknown names and string fields are skipped, like SUB.
+            Integer index = all ? Integer.valueOf(f) : catalog.indexOf(names[f].trim());
+            if (index != null && history.hasField(index)) {
+                indices[found++] = index;
+            }
+        }
+        hist = new HistReply(Arrays.copyOf(indices, found), fromUs, toUs, resolutionUs);
+        continueHist();
+    }
+
+    private void continueHist() {
+        /*
+         * Queue the pending HIST reply a chunk of whole lines at a time until it is done or
+         * the queue is above the high-water mark; onWritable() carries on from there. Only
+         * the field being sent is held in memory.
+         */
+        HistReply reply = hist;
+        TelemetryHistory history = server.history();
+        StringBuilder out = new StringBuilder(HIST_CHUNK_POINTS * 48);
+        while (open && outbound.position() <= HIGH_WATER_BYTES) {
+            out.setLength(0);
+            if (reply.range == null) {
+                if (reply.next == reply.fields.length) {
+                    hist = null;
+                    sendLine("OK\n");
+                    return;
+                }
+                int index = reply.fields[reply.next++];
+                reply.range =
+                        history.query(
+                                index,
+                                reply.fromUs,
+                                reply.toUs,
+                                reply.resolutionUs,
+                                MAX_HIST_POINTS);
+                reply.point = 0;
+                out.append("HIST ")
+                        .append(server.catalog().get(index).name)
+                        .append(' ')
+                        .append(reply.range.sourceResolutionUs() / 1000L)
+                        .append(' ')
+                        .append(reply.range.size())
+                        .append('\n');
+            }
+            HistoryRange range = reply.range;
+            int end = Math.min(range.size(), reply.point + HIST_CHUNK_POINTS);
+            for (int i = reply.point; i < end; i++) {
+                out.append(range.timestampUs(i)).append(' ');
+                HIST_FORMAT.appendTo(range.min(i), out);
+                out.append(',');
+                HIST_FORMAT.appendTo(range.max(i), out);
+                out.append(',');
+                HIST_FORMAT.appendTo(range.mean(i), out);
+                out.append(',').append(range.count(i)).append('\n');
+            }
+            reply.point = end;
+            if (end == range.size()) {
+                reply.range = null;
+            }
+            sendLine(out);
+        }
+        updateInterest();
+    }
+
+    private boolean replying() {
+        // A HIST or RESUME reply is still going out.
+        return hist != null || resumeThrough >= 0;
+    }
+
+    private void parseSub(String args) {
+        // Parse the field list and optional rate=... setting.
+        String[] parts = args.split("\\s+");
+        String fieldList = parts.length > 0 ? parts[0] : "";
+        int rate = 20;
+        boolean wantLossless = false;
+        boolean wantDelta = false;
+        // Off unless asked for: RATE lines would confuse clients that do not know them.
+        boolean wantAdapt = false;
+        boolean wantShedNotices = false;
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.startsWith("rate=")) {
+                try {
+                    rate = Integer.parseInt(part.substring(5));
+                } catch (NumberFormatException ignored) {
+                }
+            } else if (part.startsWith("lossless=")) {
+                wantLossless = isTrue(part.substring(9));
+            } else if (part.startsWith("delta=")) {
+                wantDelta = isTrue(part.substring(6));
+            } else if (part.startsWith("adapt=")) {
+                wantAdapt = isTrue(part.substring(6));
+            } else if (part.startsWith("shed=")) {
+                wantShedNotices = isTrue(part.substring(5));
+            }
+        }
+        if (wantLossless && !lossless) {
+            // Start from "now"; older samples are not replayed.
+            lastSequence = server.ring().head();
+        }
+        lossless = wantLossless;
+        shedNotices = wantShedNotices;
+        if (wantDelta) {
+            // A new subscription always starts with a full keyframe.
+            if (delta == null) {
+                delta = new DeltaEncoder(server.catalog().size());
+            }
+            delta.reset();
+        } else {
+            delta = null;
+        }
+        if (rate <= 0) {
+            rate = 20;
+        }
+        intervalNanos = Math.max(server.minIntervalNanos(), 1_000_000_000L / rate);
+        // First frame goes out right away, then every intervalNanos.
+        nextDueNanos = System.nanoTime();
+        // A slower lossless tick only batches more samples, so it does not adapt.
+        rateController.reset(1e9 / intervalNanos, wantAdapt && !lossless, nextDueNanos);
+        lastSendNanos = 0;
+        lastIntervalNanos = 0;
+        averageIntervalNanos = 0;
+        jitterNanos = 0;
+
+        FieldCatalog catalog = server.catalog();
+        byte[] modes = null;
+        if (fieldList.equalsIgnoreCase("ALL") || fieldList.equals("*")) {
+            // "ALL" means every field in the catalog.
+            int[] all = new int[catalog.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            fields = all;
+        } else {
+            String[] names = fieldList.split(",");
+            int[] idx = new int[names.length];
+            int count = 0;
+            for (String name : names) {
+                // "name:max" asks for the max over each interval instead of the latest value.
+                String fieldName = name.trim();
+                byte mode = WindowAggregator.MODE_LAST;
+                int colon = fieldName.lastIndexOf(':');
+                if (colon > 0) {
+                    byte parsed = WindowAggregator.parseMode(fieldName.substring(colon + 1));
+                    if (parsed >= 0) {
+                        mode = parsed;
+                        fieldName = fieldName.substring(0, colon);
+                    }
+                }
+                // Ignore unknown field names.
+                Integer index = catalog.indexOf(fieldName);
+                if (index != null) {
+                    idx[count++] = index;
+                    if (mode != WindowAggregator.MODE_LAST && modes == null) {
+                        modes = new byte[catalog.size()];
+                    }
+                    if (modes != null) {
+                        modes[index] = mode;
+                    }
+                }
+            }
+            fields = Arrays.copyOf(idx, count);
+        }
+        fieldsHash = Arrays.hashCode(fields);
+        scheduler = new FieldScheduler(catalog, fields, fieldsHash, intervalNanos, nextDueNanos);
+        if (modes != null && !lossless) {
+            // The first window holds just the newest sample, not whatever the ring has.
+            window = new WindowAggregator(modes);
+            lastSequence = Math.max(lastSequence, server.ring().head() - 1);
+        } else {
+            window = null;
+        }
+    }
+
+    private boolean isTrue(String value) {
+        return value.equals("1") || value.equalsIgnoreCase("true") || value.equalsIgnoreCase("on");
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        UdpTransport udp = server.udp();
+        if (udp != null) {
+            udp.removePeer(this);
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** Where a HIST reply is: fields left to query and the points of the current one. */
+    private static final class HistReply {
+        final int[] fields;
+        final long fromUs;
+        final long toUs;
+        final long resolutionUs;
+        // Next entry of fields to query.
+        int next;
+        // Field being sent (null between fields) and its next point.
+        HistoryRange range;
+        int point;
+
+        HistReply(int[] fields, long fromUs, long toUs, long resolutionUs) {
+            this.fields = fields;
+            this.fromUs = fromUs;
+            this.toUs = toUs;
+            this.resolutionUs = resolutionUs;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Extra client commands for a TelemetryServer (for example SEEK/PAUSE in replay mode).
+ *
+ * The server asks the handler about any command it does not know itself.
+ */
+public interface CommandHandler {
+    /**
+     * Handle one command and return the reply line (without newline), or null if unknown.
+     *
+     * Runs on the server IO thread, so it must return quickly and never block.
+     */
+    String handle(String command, String args);
+}
@@ -0,0 +1,126 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Per-session delta state: what this client was last sent, and what changed since then.
+ *
+ * Most fields (run id, config echoes, status text) hold the same value for thousands of
+ * loops, so after a full keyframe we only send the fields that changed. A new keyframe
+ * goes out every KEYFRAME_INTERVAL_MS so a client that missed something catches up.
+ */
+final class DeltaEncoder {
+    /** How often a full frame is sent even when little changed. */
+    static final long KEYFRAME_INTERVAL_MS = 1000;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Values as of the last frame this session queued (only subscribed slots are kept).
+    private final TelemetrySnapshot sent;
+    private byte[] changed = new byte[0];
+    private long lastKeyframeMs;
+    private boolean keyframeNeeded = true;
+
+    DeltaEncoder(int fieldCount) {
+        this.sent = TelemetrySnapshot.empty(fieldCount);
+    }
+
+    /**
+     * Force a keyframe next time (new subscription, or the client may have lost state).
+     */
+    void reset() {
+        keyframeNeeded = true;
+    }
+
+    /**
+     * True when the next frame will be a full keyframe.
+     */
+    boolean keyframeDue(long nowMs) {
+        return keyframeNeeded || nowMs - lastKeyframeMs >= KEYFRAME_INTERVAL_MS;
+    }
+
+    /**
+     * Encode the next frame in the text protocol: a DATA keyframe or a DELTA line.
+     */
+    void writeText(
+            FrameBuffer out,
+            StringBuilder line,
+            TelemetrySnapshot snapshot,
+            int[] fields,
+            boolean sequenced,
+            long nowMs) {
+        line.setLength(0);
+        if (takeKeyframe(snapshot, fields, nowMs)) {
+            line.append("DATA ");
+            if (sequenced) {
+                snapshot.appendStamp(line);
+            }
+            snapshot.appendCsv(fields, line);
+        } else {
+            // DELTA [seq t_us] <hex bitmap> v,v,... with values for the set bits only.
+            line.append("DELTA ");
+            if (sequenced) {
+                snapshot.appendStamp(line);
+            }
+            int bitmapBytes = (fields.length + 7) >>> 3;
+            for (int i = 0; i < bitmapBytes; i++) {
+                line.append(HEX[(changed[i] >>> 4) & 0xF]).append(HEX[changed[i] & 0xF]);
+            }
+            line.append(' ');
+            boolean first = true;
+            for (int i = 0; i < fields.length; i++) {
+                if ((changed[i >>> 3] & (1 << (i & 7))) != 0) {
+                    if (!first) {
+                        line.append(',');
+                    }
+                    snapshot.appendValue(fields[i], line);
+                    first = false;
+                }
+            }
+        }
+        line.append('\n');
+        out.appendUtf8(line);
+    }
+
+    /**
+     * Encode the next frame in the binary protocol: a DATA keyframe or a DELTA frame.
+     */
+    void writeBinary(
+            FrameBuffer out,
+            TelemetrySnapshot snapshot,
+            int[] fields,
+            double[] quanta,
+            long nowMs) {
+        if (takeKeyframe(snapshot, fields, nowMs)) {
+            BinaryFrames.writeData(out, snapshot, fields, quanta);
+        } else {
+            BinaryFrames.writeDelta(out, snapshot, fields, changed, quanta);
+        }
+    }
+
+    private boolean takeKeyframe(TelemetrySnapshot snapshot, int[] fields, long nowMs) {
+        /*
+         * Compare against what was last sent, remember the new values, and decide
+         * whether this frame is a keyframe. The caller has committed to sending it.
+         */
+        int bitmapBytes = (fields.length + 7) >>> 3;
+        if (changed.length < bitmapBytes) {
+            changed = new byte[bitmapBytes];
+        }
+        Arrays.fill(changed, 0, bitmapBytes, (byte) 0);
+        for (int i = 0; i < fields.length; i++) {
+            int field = fields[i];
+            // A field held back from this frame keeps its old value here until it is sent.
+            if (field >= 0 && !snapshot.sameValue(field, sent)) {
+                changed[i >>> 3] |= (byte) (1 << (i & 7));
+                sent.copyValue(field, snapshot);
+            }
+        }
+        if (keyframeDue(nowMs)) {
+            keyframeNeeded = false;
+            lastKeyframeMs = nowMs;
+            return true;
+        }
+        return false;
+    }
+}
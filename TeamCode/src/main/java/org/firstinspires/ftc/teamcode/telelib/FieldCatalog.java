@@ -18,10 +18,17 @@ public class FieldCatalog {
      * Add a field definition and return its index in the catalog.
      */
     public int add(String name, String type, String unit) {
+        return add(new SchemaField(name, type, unit));
+    }
+
+    /**
+     * Add a full field definition (keeps extras like quantum) and return its index.
+     */
+    public int add(SchemaField field) {
         // Add the field to the end of the list and remember its index.
         int index = fields.size();
-        fields.add(new SchemaField(name, type, unit));
-        indexByName.put(name, index);
+        fields.add(field);
+        indexByName.put(field.name, index);
         return index;
     }
 
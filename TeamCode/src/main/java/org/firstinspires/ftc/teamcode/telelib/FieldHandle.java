@@ -0,0 +1,41 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * A schema field resolved once, for puts that skip the name lookup.
+ *
+ * Like a seat number instead of a name on a list: get it at init with
+ * schema.field("imu_yaw_deg") (or TelemetryBus.field(...)), then every
+ * put(handle, value) writes straight into that slot of the snapshot.
+ */
+public final class FieldHandle {
+    /** Field name from the schema. */
+    public final String name;
+    /** Field type from the schema: double, long, or string. */
+    public final String type;
+    // Catalog index, or -1 for a name that is not in the schema (puts are ignored).
+    final int index;
+    // Format used by put(handle, double), from the field's "format" key.
+    final NumericFormat format;
+
+    FieldHandle(String name, String type, int index, String format) {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+        this.format = NumericFormat.compile(format);
+    }
+
+    /**
+     * Handle for a name that is not in the schema; puts through it do nothing (a bus
+     * without its own handle puts still puts by name).
+     */
+    static FieldHandle detached(String name) {
+        return new FieldHandle(name, "", -1, SchemaField.DEFAULT_FORMAT);
+    }
+
+    /**
+     * True when this handle points at a schema field (false for detached handles).
+     */
+    public boolean isAttached() {
+        return index >= 0;
+    }
+}
@@ -0,0 +1,196 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Picks which subscribed fields go into a session's next frame, from the schema's
+ * "priority" and "max_rate_hz" keys.
+ *
+ * Like a bus line with express and local stops: critical and uncapped fields ride every
+ * frame, capped fields (every bulk field) only when their own interval is up, and when the
+ * client falls behind the lower classes are left at the stop first. Fields with the same
+ * class and cap share one schedule (a group), so picking a frame is a few comparisons.
+ *
+ * A frame's field list keeps the subscription order; fields left out are -1, which the
+ * encoders treat as "not in this frame". Lists are kept per combination of groups, so
+ * steady-state frames do not allocate and sessions on the same pattern still share
+ * FrameCache entries. IO thread only.
+ */
+final class FieldScheduler {
+    /** Shed level: every class is sent. */
+    static final int SHED_NONE = 0;
+    /** Shed level: bulk fields are left out. */
+    static final int SHED_BULK = 1;
+    /** Shed level: normal and bulk fields are left out. */
+    static final int SHED_NORMAL = 2;
+
+    // Groups 0..2 hold the uncapped fields of each class; capped groups come after them.
+    private static final int UNCAPPED_GROUPS = SchemaField.PRIORITY_BULK + 1;
+    private static final int MAX_GROUPS = 64;
+    // Distinct frame field lists remembered per session.
+    private static final int MAX_VIEWS = 16;
+
+    private final int[] fields;
+    private final int fieldsHash;
+    // Group of each subscribed position.
+    private final int[] groupOf;
+    private final int[] groupPriority = new int[MAX_GROUPS];
+    private final long[] groupIntervalNanos = new long[MAX_GROUPS];
+    private final long[] groupNextDueNanos = new long[MAX_GROUPS];
+    private int groupCount = UNCAPPED_GROUPS;
+    // Bit g is set when group g has at least one subscribed field.
+    private long usedGroups;
+    // Highest class in the subscription (smallest PRIORITY_* value); it is never shed.
+    private int topPriority = SchemaField.PRIORITY_BULK;
+    // Lowest class in the subscription (largest PRIORITY_* value).
+    private int bottomPriority = SchemaField.PRIORITY_CRITICAL;
+    private final long[] viewMasks = new long[MAX_VIEWS];
+    private final int[][] views = new int[MAX_VIEWS][];
+    private final int[] viewHashes = new int[MAX_VIEWS];
+    private int viewCount;
+    private int victim;
+    private int selectedHash;
+
+    /**
+     * Group the subscribed fields; caps at or above the session rate need no schedule.
+     */
+    FieldScheduler(
+            FieldCatalog catalog,
+            int[] fields,
+            int fieldsHash,
+            long frameIntervalNanos,
+            long nowNanos) {
+        this.fields = fields;
+        this.fieldsHash = fieldsHash;
+        this.groupOf = new int[fields.length];
+        for (int p = 0; p < UNCAPPED_GROUPS; p++) {
+            groupPriority[p] = p;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            SchemaField field = catalog.get(fields[i]);
+            long interval =
+                    field.maxRateHz > 0 ? (long) (1_000_000_000L / field.maxRateHz) : 0L;
+            int group = field.priority;
+            if (interval > frameIntervalNanos) {
+                group = cappedGroup(field.priority, interval, nowNanos);
+            }
+            groupOf[i] = group;
+            usedGroups |= 1L << group;
+            topPriority = Math.min(topPriority, field.priority);
+            bottomPriority = Math.max(bottomPriority, field.priority);
+        }
+        selectedHash = fieldsHash;
+    }
+
+    /**
+     * Highest shed level that still leaves the subscription's top class in every frame
+     * (0 when it has a single class, so there is nothing to shed).
+     */
+    int maxShedLevel() {
+        return topPriority == bottomPriority ? SHED_NONE : SchemaField.PRIORITY_BULK - topPriority;
+    }
+
+    /**
+     * Field list for the next frame, or null when no subscribed field is due.
+     *
+     * Capped groups that make it into the frame move on to their next interval;
+     * ignoreCaps (lossless batches, delta keyframes) sends every unshed field.
+     */
+    int[] select(long nowNanos, int shedLevel, boolean ignoreCaps) {
+        int lowestSent = SchemaField.PRIORITY_BULK - shedLevel;
+        long mask = 0;
+        for (int g = 0; g < groupCount; g++) {
+            if ((usedGroups & (1L << g)) == 0 || groupPriority[g] > lowestSent) {
+                continue;
+            }
+            if (g < UNCAPPED_GROUPS || ignoreCaps || nowNanos - groupNextDueNanos[g] >= 0) {
+                mask |= 1L << g;
+            }
+        }
+        if (mask == 0) {
+            return null;
+        }
+        if (!ignoreCaps) {
+            for (int g = UNCAPPED_GROUPS; g < groupCount; g++) {
+                if ((mask & (1L << g)) != 0) {
+                    // Same drift-free stepping as the session's own schedule.
+                    groupNextDueNanos[g] += groupIntervalNanos[g];
+                    if (nowNanos - groupNextDueNanos[g] >= 0) {
+                        groupNextDueNanos[g] = nowNanos + groupIntervalNanos[g];
+                    }
+                }
+            }
+        }
+        if (mask == usedGroups) {
+            selectedHash = fieldsHash;
+            return fields;
+        }
+        return view(mask);
+    }
+
+    /**
+     * Arrays.hashCode of the list select() returned last (the FrameCache key).
+     */
+    int selectedHash() {
+        return selectedHash;
+    }
+
+    /**
+     * Classes left out at a shed level, as sent in SHED lines ("none", "bulk", ...).
+     */
+    static String shedClasses(int shedLevel) {
+        switch (shedLevel) {
+            case SHED_BULK:
+                return "bulk";
+            case SHED_NORMAL:
+                return "normal,bulk";
+            default:
+                return "none";
+        }
+    }
+
+    private int cappedGroup(int priority, long interval, long nowNanos) {
+        for (int g = UNCAPPED_GROUPS; g < groupCount; g++) {
+            if (groupPriority[g] == priority && groupIntervalNanos[g] == interval) {
+                return g;
+            }
+        }
+        if (groupCount == MAX_GROUPS) {
+            // Dozens of distinct caps: the rest are simply sent with every frame.
+            return priority;
+        }
+        int group = groupCount++;
+        groupPriority[group] = priority;
+        groupIntervalNanos[group] = interval;
+        // Due right away, so the first frame after SUB carries every field.
+        groupNextDueNanos[group] = nowNanos;
+        return group;
+    }
+
+    private int[] view(long mask) {
+        for (int i = 0; i < viewCount; i++) {
+            if (viewMasks[i] == mask) {
+                selectedHash = viewHashes[i];
+                return views[i];
+            }
+        }
+        int[] view = Arrays.copyOf(fields, fields.length);
+        for (int i = 0; i < view.length; i++) {
+            if ((mask & (1L << groupOf[i])) == 0) {
+                view[i] = -1;
+            }
+        }
+        int slot;
+        if (viewCount < MAX_VIEWS) {
+            slot = viewCount++;
+        } else {
+            slot = victim;
+            victim = (victim + 1) % MAX_VIEWS;
+        }
+        viewMasks[slot] = mask;
+        views[slot] = view;
+        viewHashes[slot] = Arrays.hashCode(view);
+        selectedHash = viewHashes[slot];
+        return view;
+    }
+}
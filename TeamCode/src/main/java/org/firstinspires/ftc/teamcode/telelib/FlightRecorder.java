@@ -0,0 +1,377 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * On-robot flight recorder: every published snapshot goes to memory-mapped files.
+ *
+ * Like a plane's black box, it records whether or not a laptop is connected, and what
+ * was written survives an app crash or an aborted OpMode (mapped pages belong to the
+ * OS, not to our process).
+ *
+ * The loop thread only hands a snapshot reference to a queue. A background thread
+ * encodes it as a binary DATA frame and appends it to the current segment file. See
+ * "Recording format" in the telelib README for the file layout.
+ */
+public final class FlightRecorder implements AutoCloseable {
+    /** First 8 bytes of every segment file. */
+    static final byte[] MAGIC = "TELEREC1".getBytes(StandardCharsets.US_ASCII);
+    /** Segment file extension. */
+    static final String EXTENSION = ".tlr";
+    // Header layout (big-endian).
+    static final int HEADER_BYTES_OFFSET = 8;
+    static final int INDEX_CAPACITY_OFFSET = 12;
+    static final int INDEX_COUNT_OFFSET = 16;
+    static final int SEGMENT_NUMBER_OFFSET = 20;
+    static final int CREATED_MS_OFFSET = 24;
+    static final int SCHEMA_LENGTH_OFFSET = 32;
+    static final int SCHEMA_OFFSET = 36;
+    /** Bytes per index entry: u64 sequence, u64 t_us, u64 record offset. */
+    static final int INDEX_ENTRY_BYTES = 24;
+    // One index entry per this many bytes of records.
+    static final int INDEX_STRIDE_BYTES = 32 * 1024;
+
+    private static final int MIN_SEGMENT_BYTES = 1024 * 1024;
+    private static final int MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 512;
+    private static final long FORCE_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final File directory;
+    private final long budgetBytes;
+    private final int segmentBytes;
+    private String runName;
+    private final byte[] schema;
+    private final int[] allFields;
+    private final double[] quanta;
+    private final SnapshotQueue queue = new SnapshotQueue(QUEUE_CAPACITY);
+    private final FrameBuffer frame = new FrameBuffer(1024);
+    private volatile boolean running;
+    private volatile long droppedSnapshots;
+    // Written by the recorder thread only.
+    private volatile long oversizedSnapshots;
+    private volatile IOException failure;
+    // Set while the recorder thread is parked, so offer() only unparks when it has to.
+    private volatile boolean parked;
+    private volatile Thread thread;
+
+    // Current segment (recorder thread only).
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int segmentNumber;
+    private int headerBytes;
+    private int indexCapacity;
+    private int indexCount;
+    private int position;
+    private int nextIndexAt;
+    private long lastForceNanos;
+    // Records written since the last force().
+    private boolean dirty;
+
+    /**
+     * Create a recorder that writes into directory and keeps at most budgetMb of files.
+     */
+    public FlightRecorder(File directory, FieldCatalog catalog, int budgetMb) {
+        this.directory = directory;
+        this.budgetBytes = (long) budgetMb * 1024 * 1024;
+        this.segmentBytes =
+                (int) Math.max(MIN_SEGMENT_BYTES, Math.min(MAX_SEGMENT_BYTES, budgetBytes / 8));
+        this.runName =
+                "run-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        this.schema = describe(catalog).getBytes(StandardCharsets.UTF_8);
+        this.allFields = new int[catalog.size()];
+        this.quanta = new double[catalog.size()];
+        for (int i = 0; i < allFields.length; i++) {
+            allFields[i] = i;
+            quanta[i] = catalog.get(i).quantum;
+        }
+    }
+
+    /**
+     * Open the first segment and start the recorder thread.
+     */
+    public void start() throws IOException {
+        if (running) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create recording directory: " + directory);
+        }
+        // Two runs started in the same second must not share files.
+        String base = runName;
+        for (int n = 2; segmentFile(0).exists(); n++) {
+            runName = base + "-" + n;
+        }
+        openSegment();
+        running = true;
+        Thread started = new Thread(this::runRecorderLoop, "TelemetryRecorder");
+        started.setDaemon(true);
+        thread = started;
+        started.start();
+    }
+
+    /**
+     * Queue a published snapshot for recording (publishing thread only; never blocks).
+     */
+    public void offer(TelemetrySnapshot snapshot) {
+        if (!running) {
+            return;
+        }
+        // The recorder thread gets its own reference and releases it after writing.
+        snapshot.retain();
+        if (!queue.offer(snapshot)) {
+            snapshot.release();
+            droppedSnapshots++;
+            return;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Snapshots skipped because the recorder thread fell behind.
+     */
+    public long droppedSnapshots() {
+        return droppedSnapshots;
+    }
+
+    /**
+     * Snapshots not recorded because their record is larger than a whole segment.
+     */
+    public long oversizedSnapshots() {
+        return oversizedSnapshots;
+    }
+
+    /**
+     * Error that stopped recording, or null while everything is fine. An unexpected
+     * RuntimeException on the recorder thread is reported wrapped in an IOException.
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Name shared by this run's segment files (run-yyyyMMdd-HHmmss).
+     */
+    public String runName() {
+        return runName;
+    }
+
+    /**
+     * Write what is queued, flush the segment to storage, and stop the thread.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Schema text stored in each segment header ("name,type,unit,quantum;...").
+     */
+    static String describe(FieldCatalog catalog) {
+        StringBuilder out = new StringBuilder(catalog.size() * 24);
+        List<SchemaField> fields = catalog.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            SchemaField field = fields.get(i);
+            out.append(field.name)
+                    .append(',')
+                    .append(field.type)
+                    .append(',')
+                    .append(field.unit == null ? "" : field.unit)
+                    .append(',')
+                    .append(field.quantum);
+        }
+        return out.toString();
+    }
+
+    private void runRecorderLoop() {
+        /*
+         * Drain the queue into the mapped segment. When there is nothing to do, sleep until
+         * offer() unparks us; while records are not yet forced to storage, wake up in time
+         * to force them (about once a second).
+         */
+        try {
+            while (running || !queue.isEmpty()) {
+                TelemetrySnapshot snapshot = queue.poll();
+                if (snapshot == null) {
+                    maybeForce(false);
+                    // Say we are parking, then look once more so a racing offer() is not missed.
+                    parked = true;
+                    if (running && queue.isEmpty()) {
+                        if (dirty) {
+                            long forceAt = lastForceNanos + FORCE_INTERVAL_NANOS;
+                            LockSupport.parkNanos(this, forceAt - System.nanoTime());
+                        } else {
+                            LockSupport.park(this);
+                        }
+                    }
+                    parked = false;
+                    continue;
+                }
+                try {
+                    write(snapshot);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            // Never stop silently: failure() must say why recording ended.
+            failure = new IOException("Flight recorder failed", e);
+        } finally {
+            running = false;
+            // Anything still queued is dropped; give the buffers back to the pool.
+            TelemetrySnapshot left;
+            while ((left = queue.poll()) != null) {
+                left.release();
+            }
+            closeSegment();
+        }
+    }
+
+    private void write(TelemetrySnapshot snapshot) throws IOException {
+        frame.clear();
+        BinaryFrames.writeData(frame, snapshot, allFields, quanta);
+        int size = frame.size();
+        if (headerBytes + size + 4 > segmentBytes) {
+            // Would not fit even in an empty segment (a huge string value): leave it out.
+            oversizedSnapshots++;
+            return;
+        }
+        // Keep 4 zero bytes after the last record: that is the end marker.
+        if (position + size + 4 > segmentBytes) {
+            closeSegment();
+            segmentNumber++;
+            openSegment();
+        }
+        if (position >= nextIndexAt && indexCount < indexCapacity) {
+            int entry = SCHEMA_OFFSET + schema.length + indexCount * INDEX_ENTRY_BYTES;
+            map.putLong(entry, snapshot.sequence());
+            map.putLong(entry + 8, snapshot.timestampUs());
+            map.putLong(entry + 16, position);
+            indexCount++;
+            map.putInt(INDEX_COUNT_OFFSET, indexCount);
+            nextIndexAt = position + INDEX_STRIDE_BYTES;
+        }
+        // Payload first, length last: a crash mid-write leaves a zero length (end of data).
+        map.position(position + 4);
+        map.put(frame.array(), 4, size - 4);
+        map.putInt(position, size - 4);
+        position += size;
+        dirty = true;
+        maybeForce(false);
+    }
+
+    private void openSegment() throws IOException {
+        /*
+         * New file, sized up front and mapped. Header: magic, sizes, segment number,
+         * wall-clock time, the schema, then room for the sparse index.
+         */
+        File file = segmentFile(segmentNumber);
+        indexCapacity = segmentBytes / INDEX_STRIDE_BYTES + 1;
+        int rawHeader = SCHEMA_OFFSET + schema.length + indexCapacity * INDEX_ENTRY_BYTES;
+        headerBytes = (rawHeader + 4095) & ~4095;
+        if (headerBytes + MIN_SEGMENT_BYTES / 2 > segmentBytes) {
+            throw new IOException("Schema too large for recording segments");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            channel = raf.getChannel();
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        map.put(MAGIC);
+        map.putInt(HEADER_BYTES_OFFSET, headerBytes);
+        map.putInt(INDEX_CAPACITY_OFFSET, indexCapacity);
+        map.putInt(INDEX_COUNT_OFFSET, 0);
+        map.putInt(SEGMENT_NUMBER_OFFSET, segmentNumber);
+        map.putLong(CREATED_MS_OFFSET, System.currentTimeMillis());
+        map.putInt(SCHEMA_LENGTH_OFFSET, schema.length);
+        map.position(SCHEMA_OFFSET);
+        map.put(schema);
+        indexCount = 0;
+        position = headerBytes;
+        nextIndexAt = headerBytes;
+        dirty = true;
+        deleteOldSegments(file);
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, runName + String.format(Locale.US, "-%04d", number) + EXTENSION);
+    }
+
+    private void closeSegment() {
+        if (map == null) {
+            return;
+        }
+        maybeForce(true);
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        // The mapping itself is released when the buffer is garbage collected.
+        map = null;
+        channel = null;
+    }
+
+    private void maybeForce(boolean now) {
+        // Push dirty pages to storage now and then (survives power loss, not only crashes).
+        long nanos = System.nanoTime();
+        if (map != null && (now || (dirty && nanos - lastForceNanos >= FORCE_INTERVAL_NANOS))) {
+            map.force();
+            lastForceNanos = nanos;
+            dirty = false;
+        }
+    }
+
+    private void deleteOldSegments(File keep) {
+        // Oldest first (names start with the run time); stay within the disk budget.
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        for (File file : files) {
+            if (total <= budgetBytes || file.equals(keep)) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reusable byte buffer for building outgoing frames.
+ *
+ * Clear it, append text, write it to the socket, repeat. The backing array only
+ * grows, so steady-state sends do not allocate.
+ */
+public final class FrameBuffer {
+    private byte[] bytes;
+    private int size;
+
+    public FrameBuffer(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /** Forget the current contents (keeps the backing array). */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Number of bytes written so far. */
+    public int size() {
+        return size;
+    }
+
+    /** Backing array; only the first size() bytes are valid. */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /** Append one raw byte. */
+    public void appendByte(int value) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) value;
+    }
+
+    /** Append a 32-bit big-endian int. */
+    public void appendInt(int value) {
+        ensureCapacity(size + 4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    /** Overwrite a 32-bit big-endian int at an earlier position (length prefixes). */
+    public void setInt(int position, int value) {
+        bytes[position] = (byte) (value >>> 24);
+        bytes[position + 1] = (byte) (value >>> 16);
+        bytes[position + 2] = (byte) (value >>> 8);
+        bytes[position + 3] = (byte) value;
+    }
+
+    /** Append a 64-bit big-endian long. */
+    public void appendLong(long value) {
+        ensureCapacity(size + 8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /** Append raw IEEE 754 bits of a double, big-endian. */
+    public void appendDouble(double value) {
+        appendLong(Double.doubleToRawLongBits(value));
+    }
+
+    /** Append an unsigned LEB128 varint (7 bits per byte, low bits first). */
+    public void appendVarint(long value) {
+        ensureCapacity(size + 10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    /** Append a signed value as a zigzag varint (small negatives stay short). */
+    public void appendZigZag(long value) {
+        appendVarint((value << 1) ^ (value >> 63));
+    }
+
+    /** Append a varint byte length followed by the UTF-8 text. */
+    public void appendLengthPrefixedUtf8(CharSequence text) {
+        appendVarint(utf8Length(text));
+        appendUtf8(text);
+    }
+
+    /** Append text encoded as UTF-8 (no temporary byte arrays). */
+    public void appendUtf8(CharSequence text) {
+        appendUtf8(text, 0, text.length());
+    }
+
+    /** Append chars start..end-1 of text encoded as UTF-8 (no subSequence copy). */
+    public void appendUtf8(CharSequence text, int start, int end) {
+        ensureCapacity(size + (end - start));
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                // Fast path: plain ASCII, which is nearly all telemetry text.
+                if (size == bytes.length) {
+                    ensureCapacity(size + (end - i));
+                }
+                bytes[size++] = (byte) c;
+                continue;
+            }
+            // Worst case 4 bytes for this char plus one per remaining char.
+            ensureCapacity(size + 4 + (end - i));
+            if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < end
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Broken surrogate pair: same replacement the JDK encoder uses.
+                bytes[size++] = (byte) '?';
+            } else {
+                bytes[size++] = (byte) (0xE0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /** Number of bytes appendUtf8 would write for this text. */
+    public static int utf8Length(CharSequence text) {
+        int length = text.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /** Write the current contents to a stream. */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+}
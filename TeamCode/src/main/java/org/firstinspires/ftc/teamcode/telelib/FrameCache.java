@@ -0,0 +1,105 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Encode-once cache for full DATA frames, shared by every session on the IO thread.
+ *
+ * Five dashboards on "SUB ALL" would otherwise build five identical lines per tick.
+ * Frames are keyed by snapshot sequence, subscription (same fields, same order), and
+ * protocol (text, text with seq/t_us, or binary), so the encode cost grows with the
+ * number of distinct subscriptions instead of the number of sessions. Only used from the
+ * TelemetryServer IO thread.
+ */
+final class FrameCache {
+    // Distinct subscriptions we expect at once; extra ones just re-encode more often.
+    private static final int MAX_ENTRIES = 8;
+
+    private final Entry[] entries = new Entry[MAX_ENTRIES];
+    private final StringBuilder line = new StringBuilder(256);
+    private final double[] quanta;
+    private int count;
+    // Next entry to overwrite once the cache is full.
+    private int victim;
+
+    FrameCache(double[] quanta) {
+        this.quanta = quanta;
+    }
+
+    /**
+     * Encoded DATA frame for this snapshot and subscription (valid until the next call).
+     */
+    FrameBuffer frame(
+            TelemetrySnapshot snapshot,
+            int[] fields,
+            int fieldsHash,
+            boolean binary,
+            boolean sequenced) {
+        long sequence = snapshot.sequence();
+        Entry entry = find(fields, fieldsHash, binary, sequenced);
+        if (entry.sequence == sequence) {
+            return entry.frame;
+        }
+        // Encode once into the entry's own buffer; matching sessions copy these bytes.
+        entry.sequence = sequence;
+        entry.frame.clear();
+        if (binary) {
+            BinaryFrames.writeData(entry.frame, snapshot, fields, quanta);
+        } else {
+            line.setLength(0);
+            line.append("DATA ");
+            if (sequenced) {
+                snapshot.appendStamp(line);
+            }
+            snapshot.appendCsv(fields, line);
+            line.append('\n');
+            entry.frame.appendUtf8(line);
+        }
+        return entry.frame;
+    }
+
+    /**
+     * Drop every entry (server shutdown).
+     */
+    void clear() {
+        Arrays.fill(entries, null);
+        count = 0;
+        victim = 0;
+    }
+
+    private Entry find(int[] fields, int fieldsHash, boolean binary, boolean sequenced) {
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries[i];
+            if (entry.binary == binary
+                    && entry.sequenced == sequenced
+                    && entry.fieldsHash == fieldsHash
+                    && (entry.fields == fields || Arrays.equals(entry.fields, fields))) {
+                return entry;
+            }
+        }
+        // New subscription: take a free entry, or recycle the oldest one.
+        Entry entry;
+        if (count < MAX_ENTRIES) {
+            entry = new Entry();
+            entries[count++] = entry;
+        } else {
+            entry = entries[victim];
+            victim = (victim + 1) % MAX_ENTRIES;
+        }
+        entry.fields = fields;
+        entry.fieldsHash = fieldsHash;
+        entry.binary = binary;
+        entry.sequenced = sequenced;
+        entry.sequence = -1;
+        return entry;
+    }
+
+    private static final class Entry {
+        final FrameBuffer frame = new FrameBuffer(256);
+        int[] fields;
+        int fieldsHash;
+        boolean binary;
+        boolean sequenced;
+        long sequence = -1;
+    }
+}
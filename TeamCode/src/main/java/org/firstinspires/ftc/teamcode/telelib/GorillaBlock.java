@@ -0,0 +1,276 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size compressed block of (timestamp, double) samples for one field.
+ *
+ * Same idea as Facebook's Gorilla time-series format:
+ * - timestamps are stored as the change in the step between samples (delta-of-delta),
+ *   which is 1 bit when the loop runs at a steady rate;
+ * - values are XORed with the previous value, so a value that did not change is 1 bit
+ *   and a value that changed a little only stores the bits that differ.
+ *
+ * One writer appends; readers decode samples [0, count()) after retaining the block.
+ * Blocks are reference counted like snapshots and go back to their history when the
+ * last reference is released.
+ */
+final class GorillaBlock {
+    /** Block size in 64-bit words (4 KB). */
+    static final int WORDS = 512;
+    // Worst case for one sample: 4 + 64 timestamp bits, 2 + 5 + 6 + 64 value bits.
+    private static final int MAX_SAMPLE_BITS = 145;
+    private static final int CAPACITY_BITS = WORDS * 64;
+
+    final long[] words = new long[WORDS];
+    private final TelemetryHistory owner;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    // Published after the sample's bits are written, so readers never see half a sample.
+    private volatile int count;
+    private volatile long lastTimestampUs;
+    private long firstTimestampUs;
+    // Writer state (loop thread only).
+    private int bitPosition;
+    private long previousTimestamp;
+    private long previousDelta;
+    private long previousBits;
+    private int previousLeading;
+    private int previousTrailing;
+
+    GorillaBlock(TelemetryHistory owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Number of complete samples readers may decode.
+     */
+    int count() {
+        return count;
+    }
+
+    long firstTimestampUs() {
+        return firstTimestampUs;
+    }
+
+    long lastTimestampUs() {
+        return lastTimestampUs;
+    }
+
+    /**
+     * Bytes actually used by compressed samples so far.
+     */
+    int usedBytes() {
+        return (bitPosition + 7) >>> 3;
+    }
+
+    /**
+     * Append one sample (single writer). Returns false when the block is full.
+     */
+    boolean append(long timestampUs, double value) {
+        if (bitPosition + MAX_SAMPLE_BITS > CAPACITY_BITS) {
+            return false;
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        int n = count;
+        if (n == 0) {
+            // First sample is stored raw; everything after is relative to it.
+            firstTimestampUs = timestampUs;
+            writeBits(timestampUs, 64);
+            writeBits(bits, 64);
+            previousDelta = 0;
+            previousLeading = -1;
+        } else {
+            long delta = timestampUs - previousTimestamp;
+            writeTimestamp(delta - previousDelta);
+            writeValue(bits ^ previousBits);
+            previousDelta = delta;
+        }
+        previousTimestamp = timestampUs;
+        previousBits = bits;
+        lastTimestampUs = timestampUs;
+        count = n + 1;
+        return true;
+    }
+
+    void retain() {
+        refs.incrementAndGet();
+    }
+
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            owner.recycle(this);
+        }
+    }
+
+    void reset() {
+        // Bits are ORed in, so a recycled block must start from all zeros.
+        Arrays.fill(words, 0L);
+        count = 0;
+        bitPosition = 0;
+        firstTimestampUs = 0;
+        lastTimestampUs = 0;
+        refs.set(1);
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        // Prefix picks the width: 0 | 10 + 7 | 110 + 12 | 1110 + 20 | 1111 + 64 bits.
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (fits(deltaOfDelta, 7)) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (fits(deltaOfDelta, 12)) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 12);
+        } else if (fits(deltaOfDelta, 20)) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 20);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            // Same value as last time.
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            // Changed bits fit inside the previous window: reuse it.
+            writeBits(0b10, 2);
+            writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            return;
+        }
+        int length = 64 - leading - trailing;
+        writeBits(0b11, 2);
+        writeBits(leading, 5);
+        writeBits(length - 1, 6);
+        writeBits(xor >>> trailing, length);
+        previousLeading = leading;
+        previousTrailing = trailing;
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private void writeBits(long value, int n) {
+        // Most significant bit first, possibly spanning two words.
+        int index = bitPosition >>> 6;
+        int free = 64 - (bitPosition & 63);
+        long masked = n == 64 ? value : value & ((1L << n) - 1);
+        if (n <= free) {
+            words[index] |= masked << (free - n);
+        } else {
+            int rest = n - free;
+            words[index] |= masked >>> rest;
+            words[index + 1] |= masked << (64 - rest);
+        }
+        bitPosition += n;
+    }
+
+    /**
+     * Sequential decoder; reuse one instance for many blocks.
+     */
+    static final class Decoder {
+        private long[] words;
+        private int remaining;
+        private int bitPosition;
+        private boolean started;
+        private long timestampUs;
+        private long delta;
+        private long bits;
+        private int leading;
+        private int trailing;
+
+        /**
+         * Start decoding the first count samples of a (retained) block.
+         */
+        void reset(GorillaBlock block, int count) {
+            this.words = block.words;
+            this.remaining = count;
+            this.bitPosition = 0;
+            this.started = false;
+        }
+
+        /**
+         * Decode the next sample; false when the block has no more.
+         */
+        boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            if (!started) {
+                started = true;
+                timestampUs = readBits(64);
+                bits = readBits(64);
+                delta = 0;
+                return true;
+            }
+            delta += readTimestamp();
+            timestampUs += delta;
+            if (readBits(1) != 0) {
+                if (readBits(1) != 0) {
+                    leading = (int) readBits(5);
+                    int length = (int) readBits(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                int length = 64 - leading - trailing;
+                bits ^= readBits(length) << trailing;
+            }
+            return true;
+        }
+
+        long timestampUs() {
+            return timestampUs;
+        }
+
+        double value() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        private long readTimestamp() {
+            if (readBits(1) == 0) {
+                return 0;
+            }
+            if (readBits(1) == 0) {
+                return readSigned(7);
+            }
+            if (readBits(1) == 0) {
+                return readSigned(12);
+            }
+            if (readBits(1) == 0) {
+                return readSigned(20);
+            }
+            return readBits(64);
+        }
+
+        private long readSigned(int n) {
+            // Sign-extend an n-bit two's complement value.
+            return (readBits(n) << (64 - n)) >> (64 - n);
+        }
+
+        private long readBits(int n) {
+            int index = bitPosition >>> 6;
+            int offset = bitPosition & 63;
+            int free = 64 - offset;
+            long value;
+            if (n <= free) {
+                value = (words[index] << offset) >>> (64 - n);
+            } else {
+                int rest = n - free;
+                value = ((words[index] << offset) >>> (64 - n))
+                        | (words[index + 1] >>> (64 - rest));
+            }
+            bitPosition += n;
+            return value;
+        }
+    }
+}
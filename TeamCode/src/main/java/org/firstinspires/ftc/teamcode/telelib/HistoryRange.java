@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Result of a history query: one field's points, oldest first.
+ *
+ * Each point covers one output bucket (or one raw sample when the resolution is 0) and
+ * carries min, max, mean and the number of samples folded into it.
+ */
+public final class HistoryRange {
+    private final long resolutionUs;
+    private final long sourceResolutionUs;
+    private long[] timestampsUs = new long[64];
+    private double[] min = new double[64];
+    private double[] max = new double[64];
+    private double[] sum = new double[64];
+    private long[] counts = new long[64];
+    private int size;
+
+    HistoryRange(long resolutionUs, long sourceResolutionUs) {
+        this.resolutionUs = resolutionUs;
+        this.sourceResolutionUs = sourceResolutionUs;
+    }
+
+    /**
+     * Requested point spacing in microseconds (0 = every raw sample).
+     */
+    public long resolutionUs() {
+        return resolutionUs;
+    }
+
+    /**
+     * Resolution of the tier the points were built from (0 = raw samples).
+     */
+    public long sourceResolutionUs() {
+        return sourceResolutionUs;
+    }
+
+    /**
+     * Number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Start of the point's bucket, or the sample time for raw points (microseconds).
+     */
+    public long timestampUs(int index) {
+        return timestampsUs[index];
+    }
+
+    /**
+     * Smallest sample in the point.
+     */
+    public double min(int index) {
+        return min[index];
+    }
+
+    /**
+     * Largest sample in the point.
+     */
+    public double max(int index) {
+        return max[index];
+    }
+
+    /**
+     * Average of the samples in the point.
+     */
+    public double mean(int index) {
+        return sum[index] / counts[index];
+    }
+
+    /**
+     * Number of samples folded into the point.
+     */
+    public long count(int index) {
+        return counts[index];
+    }
+
+    void keepNewest(int maxPoints) {
+        // Drop the oldest points beyond maxPoints (HIST replies are capped per field).
+        if (size <= maxPoints) {
+            return;
+        }
+        int drop = size - maxPoints;
+        System.arraycopy(timestampsUs, drop, timestampsUs, 0, maxPoints);
+        System.arraycopy(min, drop, min, 0, maxPoints);
+        System.arraycopy(max, drop, max, 0, maxPoints);
+        System.arraycopy(sum, drop, sum, 0, maxPoints);
+        System.arraycopy(counts, drop, counts, 0, maxPoints);
+        size = maxPoints;
+    }
+
+    void add(long timestampUs, double pointMin, double pointMax, double pointSum, long count) {
+        // Merge into the last point while it falls in the same output bucket.
+        long bucket =
+                resolutionUs > 0
+                        ? Math.floorDiv(timestampUs, resolutionUs) * resolutionUs
+                        : timestampUs;
+        if (size > 0 && resolutionUs > 0 && timestampsUs[size - 1] == bucket) {
+            int last = size - 1;
+            min[last] = Math.min(min[last], pointMin);
+            max[last] = Math.max(max[last], pointMax);
+            sum[last] += pointSum;
+            counts[last] += count;
+            return;
+        }
+        if (size == timestampsUs.length) {
+            int capacity = size * 2;
+            timestampsUs = Arrays.copyOf(timestampsUs, capacity);
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+            sum = Arrays.copyOf(sum, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        timestampsUs[size] = bucket;
+        min[size] = pointMin;
+        max[size] = pointMax;
+        sum[size] = pointSum;
+        counts[size] = count;
+        size++;
+    }
+}
@@ -0,0 +1,109 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with about 20% resolution.
+ *
+ * Buckets double in width every four buckets (like a log scale with four steps per
+ * octave), so 160 counters cover 1 ns to about 18 minutes. record(...) is a handful of
+ * plain loads and ordered stores: one thread records, any thread may read.
+ */
+final class LatencyHistogram {
+    // Four sub-buckets per power of two, up to 2^41 ns.
+    private static final int BUCKETS = 160;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Add one duration (single writer thread).
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int index = bucketOf(nanos);
+        // Only this thread writes, so ordered stores are enough (no CAS).
+        counts.lazySet(index, counts.get(index) + 1);
+        count.lazySet(count.get() + 1);
+        totalNanos.lazySet(totalNanos.get() + nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.lazySet(nanos);
+        }
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    double meanNanos() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / (double) n;
+    }
+
+    long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Upper edge of the bucket that holds the q-quantile (0..1); 0 when empty.
+     */
+    long quantileNanos(double q) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return Math.min(lowerEdge(i + 1) - 1, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * "count=.. mean_us=.. p50_us=.. p99_us=.. max_us=.." for STATS replies.
+     */
+    void appendTo(StringBuilder out) {
+        out.append("count=")
+                .append(count())
+                .append(" mean_us=")
+                .append(Math.round(meanNanos() / 100.0) / 10.0)
+                .append(" p50_us=")
+                .append(Math.round(quantileNanos(0.50) / 100.0) / 10.0)
+                .append(" p99_us=")
+                .append(Math.round(quantileNanos(0.99) / 100.0) / 10.0)
+                .append(" max_us=")
+                .append(Math.round(maxNanos() / 100.0) / 10.0);
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < 4) {
+            return (int) nanos;
+        }
+        // Top bit picks the octave, the next two bits the step within it.
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int step = (int) (nanos >>> (exponent - 2)) & 3;
+        return Math.min(BUCKETS - 1, 4 * (exponent - 1) + step);
+    }
+
+    private static long lowerEdge(int index) {
+        if (index < 4) {
+            return index;
+        }
+        int exponent = index / 4 + 1;
+        return (long) (4 + index % 4) << (exponent - 2);
+    }
+}
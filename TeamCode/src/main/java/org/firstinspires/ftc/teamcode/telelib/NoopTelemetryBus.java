@@ -30,6 +30,23 @@ public class NoopTelemetryBus implements TelemetryBus {
     @Override
     public void put(String name, long value) {}
 
+    @Override
+    public FieldHandle field(String name) {
+        return FieldHandle.detached(name);
+    }
+
+    @Override
+    public void put(FieldHandle field, double value) {}
+
+    @Override
+    public void put(FieldHandle field, double value, String format) {}
+
+    @Override
+    public void put(FieldHandle field, long value) {}
+
+    @Override
+    public void put(FieldHandle field, CharSequence value) {}
+
     @Override
     public void publish() {}
 
@@ -0,0 +1,201 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A number format (like "%.2f") that was parsed once and can be reused.
+ *
+ * String.format parses the pattern, creates a Formatter, and boxes the double
+ * on every call. This class handles the common "%.Nf" patterns by writing the
+ * digits straight into a reusable buffer, and matches String.format(Locale.US)
+ * output for them. Two cases still go through String.format and allocate: exotic
+ * patterns (flags, width, "%e", ...) and values whose magnitude times 10^N reaches
+ * 1e14 (for example above 100 billion with "%.3f").
+ *
+ * compile() caches up to MAX_CACHED patterns. Patterns built at run time beyond that are
+ * still compiled, just not cached, so compile those once per field (see FieldHandle).
+ */
+public final class NumericFormat {
+    /*
+     * Largest scaled value for the fast path. Below 1e14 every tie point (x.5 at the
+     * last digit) has at most 15 significant digits, so the JDK's shortest decimal
+     * form of a double sitting on a tie is exactly that tie.
+     */
+    private static final double MAX_FAST_SCALED = 1e14;
+    private static final int MAX_FAST_DECIMALS = 15;
+    private static final long[] POW10 = new long[MAX_FAST_DECIMALS + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    /** Most patterns compile() keeps; a schema uses a handful. */
+    static final int MAX_CACHED = 256;
+    private static final ConcurrentHashMap<String, NumericFormat> CACHE = new ConcurrentHashMap<>();
+
+    private final String pattern;
+    private final String prefix;
+    private final String suffix;
+    // Digits after the decimal point, or -1 when the pattern needs String.format.
+    private final int decimals;
+
+    private NumericFormat(String pattern, String prefix, String suffix, int decimals) {
+        this.pattern = pattern;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.decimals = decimals;
+    }
+
+    /**
+     * Parse a format once (cached up to MAX_CACHED patterns). Throws if the format cannot
+     * format a double.
+     */
+    public static NumericFormat compile(String pattern) {
+        NumericFormat cached = CACHE.get(pattern);
+        if (cached != null) {
+            return cached;
+        }
+        NumericFormat parsed = parse(pattern);
+        if (parsed.decimals < 0) {
+            // Exotic format: make sure String.format accepts it before trusting it.
+            String.format(Locale.US, pattern, 0.0);
+        }
+        // Racing callers may both pass the check; the cache can overshoot by a few entries.
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.put(pattern, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * The original format string.
+     */
+    public String pattern() {
+        return pattern;
+    }
+
+    /**
+     * Format a value into a new String (same output as String.format(Locale.US, ...)).
+     */
+    public String format(double value) {
+        if (decimals < 0) {
+            return String.format(Locale.US, pattern, value);
+        }
+        StringBuilder out = new StringBuilder(24);
+        appendTo(value, out);
+        return out.toString();
+    }
+
+    /**
+     * Append the formatted value to a reusable builder without extra allocations.
+     */
+    public void appendTo(double value, StringBuilder out) {
+        if (decimals < 0) {
+            out.append(String.format(Locale.US, pattern, value));
+            return;
+        }
+        out.append(prefix);
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "Infinity" : "-Infinity");
+        } else {
+            double abs = Math.abs(value);
+            long scale = POW10[decimals];
+            if (abs * scale >= MAX_FAST_SCALED) {
+                // Too big for exact long math; let the JDK handle it (this allocates).
+                out.append(String.format(Locale.US, "%." + decimals + "f", value));
+            } else {
+                long scaled = roundScaled(abs, scale);
+                if (isNegative(value)) {
+                    // String.format keeps the sign even when the result rounds to zero.
+                    out.append('-');
+                }
+                out.append(scaled / scale);
+                if (decimals > 0) {
+                    out.append('.');
+                    long fraction = scaled % scale;
+                    // Pad with leading zeros so the fraction always has exactly N digits.
+                    for (int i = digitCount(fraction); i < decimals; i++) {
+                        out.append('0');
+                    }
+                    out.append(fraction);
+                }
+            }
+        }
+        out.append(suffix);
+    }
+
+    /**
+     * True when this format is handled without String.format.
+     */
+    public boolean isFast() {
+        return decimals >= 0;
+    }
+
+    static long roundScaled(double abs, long scale) {
+        /*
+         * String.format rounds the shortest decimal form of the double HALF_UP.
+         * That only differs from exact rounding right at a tie (x.5 at the last digit),
+         * so check the two nearby tie points with exact division instead of trusting
+         * the (rounded) multiplication.
+         */
+        long candidate = (long) (abs * scale + 0.5);
+        double twiceScale = 2.0 * scale;
+        double upperTie = (2.0 * candidate + 1.0) / twiceScale;
+        if (abs >= upperTie) {
+            return candidate + 1;
+        }
+        if (candidate > 0) {
+            double lowerTie = (2.0 * candidate - 1.0) / twiceScale;
+            if (abs < lowerTie) {
+                return candidate - 1;
+            }
+        }
+        return candidate;
+    }
+
+    private static boolean isNegative(double value) {
+        // Works for -0.0 too, like String.format.
+        return Double.doubleToRawLongBits(value) < 0;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static NumericFormat parse(String pattern) {
+        // Accept optional plain text around one "%.Nf" or "%f" (no flags or width).
+        int start = pattern.indexOf('%');
+        if (start < 0 || pattern.indexOf('%', start + 1) >= 0) {
+            return new NumericFormat(pattern, "", "", -1);
+        }
+        int pos = start + 1;
+        int decimals = 6;
+        if (pos < pattern.length() && pattern.charAt(pos) == '.') {
+            pos++;
+            int digitsStart = pos;
+            while (pos < pattern.length() && Character.isDigit(pattern.charAt(pos))) {
+                pos++;
+            }
+            if (pos == digitsStart || pos - digitsStart > 2) {
+                return new NumericFormat(pattern, "", "", -1);
+            }
+            decimals = Integer.parseInt(pattern.substring(digitsStart, pos));
+        }
+        if (pos >= pattern.length() || pattern.charAt(pos) != 'f' || decimals > MAX_FAST_DECIMALS) {
+            return new NumericFormat(pattern, "", "", -1);
+        }
+        return new NumericFormat(
+                pattern, pattern.substring(0, start), pattern.substring(pos + 1), decimals);
+    }
+}
@@ -0,0 +1,109 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Per-session send rate that backs off when the client's link cannot keep up (AIMD).
+ *
+ * Like easing off the throttle when the road ahead is jammed: while bytes pile up in the
+ * session queue (or have waited too long), the rate is halved; once the queue drains it
+ * creeps back up 1 Hz at a time to what the client asked for. Fewer, fresh frames beat a
+ * queue full of old ones. IO thread only.
+ */
+final class RateController {
+    // Backlog that counts as congestion (well below the shedding thresholds).
+    private static final int CONGESTED_BYTES = 8 * 1024;
+    // Oldest unsent byte older than this (or two frame intervals) counts as congestion.
+    private static final long CONGESTED_AGE_NANOS = 100_000_000L;
+    // At least this long between two halvings, so one backlog is not punished twice.
+    private static final long DECREASE_HOLD_NANOS = 250_000_000L;
+    // Additive increase: 1 Hz per this much time with an empty queue.
+    private static final long INCREASE_STEP_NANOS = 100_000_000L;
+    private static final double INCREASE_HZ = 1.0;
+    // Never back off below this (or the requested rate, if lower).
+    private static final double MIN_RATE_HZ = 1.0;
+    // At most one RATE report per this long while the rate is moving.
+    private static final long REPORT_INTERVAL_NANOS = 500_000_000L;
+
+    private double requestedHz = 20.0;
+    private double effectiveHz = 20.0;
+    private boolean enabled;
+    private long lastDecreaseNanos;
+    private long lastIncreaseNanos;
+    private double reportedHz = 20.0;
+    private long lastReportNanos;
+
+    /**
+     * Start over at the requested rate (new SUB). A disabled controller never changes it.
+     */
+    void reset(double requestedHz, boolean enabled, long nowNanos) {
+        this.requestedHz = requestedHz;
+        this.effectiveHz = requestedHz;
+        this.reportedHz = requestedHz;
+        this.enabled = enabled;
+        lastDecreaseNanos = nowNanos - DECREASE_HOLD_NANOS;
+        lastIncreaseNanos = nowNanos;
+    }
+
+    /**
+     * Adjust the rate from the session's backlog at a send tick.
+     *
+     * queuedBytes is what waits in the session queue, backlogAgeNanos how long its oldest
+     * byte has waited (0 when empty).
+     */
+    void update(long nowNanos, int queuedBytes, long backlogAgeNanos) {
+        if (!enabled) {
+            return;
+        }
+        long interval = intervalNanos();
+        boolean congested =
+                queuedBytes > CONGESTED_BYTES
+                        || backlogAgeNanos > Math.max(CONGESTED_AGE_NANOS, 2 * interval);
+        if (congested) {
+            // Multiplicative decrease, once per hold time (or per frame at low rates).
+            if (nowNanos - lastDecreaseNanos >= Math.max(DECREASE_HOLD_NANOS, interval)) {
+                effectiveHz = Math.max(Math.min(MIN_RATE_HZ, requestedHz), effectiveHz / 2);
+                lastDecreaseNanos = nowNanos;
+            }
+            lastIncreaseNanos = nowNanos;
+        } else if (queuedBytes == 0 && effectiveHz < requestedHz) {
+            // Additive increase while the link keeps up.
+            long steps = (nowNanos - lastIncreaseNanos) / INCREASE_STEP_NANOS;
+            if (steps > 0) {
+                effectiveHz = Math.min(requestedHz, effectiveHz + steps * INCREASE_HZ);
+                lastIncreaseNanos += steps * INCREASE_STEP_NANOS;
+            }
+        } else {
+            lastIncreaseNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Time between frames at the current rate.
+     */
+    long intervalNanos() {
+        return (long) (1_000_000_000L / effectiveHz);
+    }
+
+    double requestedHz() {
+        return requestedHz;
+    }
+
+    double effectiveHz() {
+        return effectiveHz;
+    }
+
+    /**
+     * True when the client should be sent a RATE line now (the rate changed since the last
+     * one; throttled while it moves, immediate once it is back at the requested rate).
+     */
+    boolean takeReport(long nowNanos) {
+        if (effectiveHz == reportedHz) {
+            return false;
+        }
+        if (effectiveHz != requestedHz && nowNanos - lastReportNanos < REPORT_INTERVAL_NANOS) {
+            return false;
+        }
+        reportedHz = effectiveHz;
+        lastReportNanos = nowNanos;
+        return true;
+    }
+}
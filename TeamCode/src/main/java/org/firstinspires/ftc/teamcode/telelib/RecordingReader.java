@@ -0,0 +1,322 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Streams snapshots back out of FlightRecorder segment files.
+ *
+ * Segments are memory-mapped one at a time and decoded record by record, so opening a
+ * multi-hour log only reads its first header. The sparse index in each segment makes
+ * seek(...) jump close to the target instead of scanning from the start.
+ *
+ * Plain Java (no FTC SDK), so it also runs on a laptop. Not thread-safe.
+ */
+public final class RecordingReader implements AutoCloseable {
+    // Display format for doubles without a quantum (recordings do not keep put formats).
+    private static final String DEFAULT_FORMAT = "%.4f";
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final long EMPTY_SEGMENT = Long.MAX_VALUE;
+
+    private final File[] files;
+    private final long[] firstUs;
+    private final FieldCatalog catalog = new FieldCatalog();
+    private final String[] formats;
+    private final double[] quanta;
+    private final long startUs;
+    // Current segment and read position.
+    private int segmentIndex = -1;
+    private ByteBuffer segment;
+    private int position;
+    // Current record.
+    private long sequence;
+    private long timestampUs;
+    private int valuesStart;
+    private int valueCount;
+
+    /**
+     * Open one recorded run (files named runName-NNNN.tlr in directory).
+     */
+    public RecordingReader(File directory, String runName) throws IOException {
+        File[] all = directory.listFiles(
+                (dir, name) -> name.startsWith(runName + "-")
+                        && name.endsWith(FlightRecorder.EXTENSION)
+                        && runOf(name).equals(runName));
+        if (all == null || all.length == 0) {
+            throw new IOException("No recording named " + runName + " in " + directory);
+        }
+        Arrays.sort(all);
+        this.files = all;
+        this.firstUs = new long[all.length];
+        Arrays.fill(firstUs, UNKNOWN);
+        // The schema comes from the first segment header.
+        openSegment(0);
+        int schemaLength = segment.getInt(FlightRecorder.SCHEMA_LENGTH_OFFSET);
+        byte[] schema = new byte[schemaLength];
+        ByteBuffer view = segment.duplicate();
+        view.position(FlightRecorder.SCHEMA_OFFSET);
+        view.get(schema);
+        for (String entry : new String(schema, StandardCharsets.UTF_8).split(";")) {
+            String[] parts = entry.split(",", -1);
+            if (parts.length >= 4) {
+                double quantum = Double.parseDouble(parts[3]);
+                catalog.add(new SchemaField(parts[0], parts[1], parts[2], quantum));
+            }
+        }
+        this.formats = new String[catalog.size()];
+        this.quanta = new double[catalog.size()];
+        for (int i = 0; i < formats.length; i++) {
+            quanta[i] = catalog.get(i).quantum;
+            formats[i] = formatFor(quanta[i]);
+        }
+        long start = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (firstTimestampUs(i) != EMPTY_SEGMENT) {
+                start = firstTimestampUs(i);
+                break;
+            }
+        }
+        this.startUs = start;
+    }
+
+    /**
+     * Names of the recorded runs in a directory, oldest first.
+     */
+    public static List<String> listRuns(File directory) {
+        TreeSet<String> runs = new TreeSet<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(FlightRecorder.EXTENSION)) {
+                    runs.add(runOf(name));
+                }
+            }
+        }
+        return new ArrayList<>(runs);
+    }
+
+    /**
+     * Field list stored in the recording.
+     */
+    public FieldCatalog catalog() {
+        return catalog;
+    }
+
+    /**
+     * Robot time of the first record (microseconds).
+     */
+    public long startUs() {
+        return startUs;
+    }
+
+    /**
+     * Move to the next record; false at the end of the recording.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment != null && position + 4 <= segment.limit()) {
+                int length = segment.getInt(position);
+                if (length > 0 && position + 4 + length <= segment.limit()) {
+                    readHeader(position);
+                    position += 4 + length;
+                    return true;
+                }
+            }
+            // End marker (or end of file): continue with the next segment.
+            if (segmentIndex + 1 >= files.length) {
+                return false;
+            }
+            openSegment(segmentIndex + 1);
+        }
+    }
+
+    /**
+     * Publish sequence of the current record (as recorded on the robot).
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Robot time of the current record (microseconds since the robot server started).
+     */
+    public long timestampUs() {
+        return timestampUs;
+    }
+
+    /**
+     * Decode the current record into a new snapshot from the builder.
+     */
+    public TelemetrySnapshot read(TelemetrySnapshotBuilder builder) {
+        builder.begin();
+        ByteBuffer in = segment.duplicate();
+        in.position(valuesStart);
+        for (int i = 0; i < valueCount; i++) {
+            int field = (int) readVarint(in);
+            int tag = in.get() & 0xFF;
+            switch (tag) {
+                case BinaryFrames.TAG_DOUBLE:
+                    builder.set(field, in.getDouble(), formats[field]);
+                    break;
+                case BinaryFrames.TAG_LONG:
+                    builder.set(field, unZigZag(readVarint(in)));
+                    break;
+                case BinaryFrames.TAG_STRING:
+                    byte[] text = new byte[(int) readVarint(in)];
+                    in.get(text);
+                    builder.set(field, new String(text, StandardCharsets.UTF_8));
+                    break;
+                case BinaryFrames.TAG_QUANTIZED:
+                    builder.set(field, unZigZag(readVarint(in)) * quanta[field], formats[field]);
+                    break;
+                default:
+                    // Empty slot: nothing to set.
+                    break;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Position so that next() returns the first record at or after timestampUs.
+     */
+    public void seek(long timestampUs) throws IOException {
+        // Last segment that starts at or before the target.
+        int target = 0;
+        for (int i = 0; i < files.length; i++) {
+            long first = firstTimestampUs(i);
+            if (first == EMPTY_SEGMENT) {
+                continue;
+            }
+            if (first > timestampUs) {
+                break;
+            }
+            target = i;
+        }
+        openSegment(target);
+        // Jump to the last index entry at or before the target...
+        int count = segment.getInt(FlightRecorder.INDEX_COUNT_OFFSET);
+        int indexStart = indexStart(segment);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entryUs = segment.getLong(indexStart + mid * FlightRecorder.INDEX_ENTRY_BYTES + 8);
+            if (entryUs <= timestampUs) {
+                position =
+                        (int) segment.getLong(
+                                indexStart + mid * FlightRecorder.INDEX_ENTRY_BYTES + 16);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // ...then step over records that are still too early.
+        while (position + 4 <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + 4 + length > segment.limit()) {
+                break;
+            }
+            readHeader(position);
+            if (this.timestampUs >= timestampUs) {
+                break;
+            }
+            position += 4 + length;
+        }
+    }
+
+    @Override
+    public void close() {
+        // Mappings are released by the GC; just drop our reference.
+        segment = null;
+        segmentIndex = -1;
+    }
+
+    private void openSegment(int index) throws IOException {
+        segment = map(files[index]);
+        segmentIndex = index;
+        position = segment.getInt(FlightRecorder.HEADER_BYTES_OFFSET);
+    }
+
+    private long firstTimestampUs(int index) throws IOException {
+        // Index entry 0 always points at the first record of a segment.
+        if (firstUs[index] == UNKNOWN) {
+            ByteBuffer header = map(files[index]);
+            int count = header.getInt(FlightRecorder.INDEX_COUNT_OFFSET);
+            firstUs[index] = count > 0 ? header.getLong(indexStart(header) + 8) : EMPTY_SEGMENT;
+        }
+        return firstUs[index];
+    }
+
+    private static int indexStart(ByteBuffer header) {
+        // The index follows the schema text.
+        return FlightRecorder.SCHEMA_OFFSET + header.getInt(FlightRecorder.SCHEMA_LENGTH_OFFSET);
+    }
+
+    private void readHeader(int recordStart) {
+        // Frame: u32 length, 'D', varint seq, varint t_us, varint count, values.
+        ByteBuffer in = segment.duplicate();
+        in.position(recordStart + 5);
+        sequence = readVarint(in);
+        timestampUs = readVarint(in);
+        valueCount = (int) readVarint(in);
+        valuesStart = in.position();
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[FlightRecorder.MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, FlightRecorder.MAGIC)) {
+                throw new IOException("Not a telemetry recording: " + file);
+            }
+            return buffer;
+        }
+    }
+
+    private static String runOf(String fileName) {
+        // run-yyyyMMdd-HHmmss[-n]-NNNN.tlr -> run-yyyyMMdd-HHmmss[-n]
+        String base =
+                fileName.substring(0, fileName.length() - FlightRecorder.EXTENSION.length());
+        int dash = base.lastIndexOf('-');
+        return dash < 0 ? base : base.substring(0, dash);
+    }
+
+    private static String formatFor(double quantum) {
+        if (quantum <= 0) {
+            return DEFAULT_FORMAT;
+        }
+        // Enough decimals to show one quantum step (0.01 -> "%.2f").
+        int digits = (int) Math.max(0, Math.ceil(-Math.log10(quantum) - 1e-9));
+        return String.format(Locale.US, "%%.%df", digits);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
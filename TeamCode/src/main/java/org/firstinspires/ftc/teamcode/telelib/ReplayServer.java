@@ -0,0 +1,230 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Serves a FlightRecorder recording over the normal TelemetryServer protocol.
+ *
+ * The dashboard connects exactly as it would to the robot (HELLO, SUB, DATA, ...) and
+ * can also send:
+ * PAUSE | PLAY | SPEED x | SEEK seconds   (seconds from the start of the recording)
+ *
+ * Runs headless on a laptop or CI box; nothing here needs the FTC SDK:
+ * java ...telelib.ReplayServer recordings-dir [run-name] [--port 5599] [--speed 2]
+ */
+public final class ReplayServer implements CommandHandler, AutoCloseable {
+    private static final long NO_SEEK = Long.MIN_VALUE;
+
+    private final RecordingReader reader;
+    private final TelemetryServer server;
+    private final TelemetrySnapshotBuilder builder;
+    private Thread thread;
+    // Playback controls; changed by client commands on the server IO thread.
+    private boolean running;
+    private boolean paused;
+    private double speed;
+    private long seekUs = NO_SEEK;
+    // Bumped on every control change so the replay thread re-times from "now".
+    private long version;
+
+    /**
+     * Create a replay of one recorded run on the given port.
+     */
+    public ReplayServer(File directory, String runName, int port, double speed)
+            throws IOException {
+        this.reader = new RecordingReader(directory, runName);
+        FieldCatalog catalog = reader.catalog();
+        this.server = new TelemetryServer(port, catalog);
+        this.builder = new TelemetrySnapshotBuilder(new SnapshotPool(catalog.size(), 8));
+        this.speed = speed > 0 ? speed : 1.0;
+        server.setCommandHandler(this);
+        server.setSessionFailureHandler(e -> System.err.println("Client dropped: " + e));
+        server.setFailureHandler(e -> System.err.println("Server stopped: " + e));
+    }
+
+    /**
+     * Start serving clients and playing the recording from the beginning.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        server.start();
+        thread = new Thread(this::runReplayLoop, "TelemetryReplay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop playback and close the server.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        server.close();
+        reader.close();
+    }
+
+    /**
+     * Handle PAUSE, PLAY, SPEED and SEEK from dashboard clients.
+     */
+    @Override
+    public synchronized String handle(String command, String args) {
+        switch (command) {
+            case "PAUSE":
+                paused = true;
+                break;
+            case "PLAY":
+                paused = false;
+                break;
+            case "SPEED":
+                double newSpeed = parseDouble(args);
+                if (!(newSpeed > 0) || Double.isInfinite(newSpeed)) {
+                    return "ERR bad-speed";
+                }
+                speed = newSpeed;
+                break;
+            case "SEEK":
+                double seconds = parseDouble(args);
+                if (Double.isNaN(seconds)) {
+                    return "ERR bad-seek";
+                }
+                seekUs = reader.startUs() + (long) (seconds * 1e6);
+                break;
+            default:
+                return null;
+        }
+        version++;
+        notifyAll();
+        return "OK";
+    }
+
+    /**
+     * Command line entry point: replay a run (the newest one by default).
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println(
+                    "usage: ReplayServer <recordings-dir> [run-name] [--port N] [--speed X]");
+            System.exit(2);
+        }
+        File directory = new File(args[0]);
+        String runName = null;
+        int port = 5599;
+        double speed = 1.0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--speed") && i + 1 < args.length) {
+                speed = Double.parseDouble(args[++i]);
+            } else {
+                runName = args[i];
+            }
+        }
+        if (runName == null) {
+            List<String> runs = RecordingReader.listRuns(directory);
+            if (runs.isEmpty()) {
+                System.err.println("No recordings in " + directory);
+                System.exit(1);
+            }
+            runName = runs.get(runs.size() - 1);
+        }
+        ReplayServer replay = new ReplayServer(directory, runName, port, speed);
+        replay.start();
+        System.out.println(
+                String.format(Locale.US, "Replaying %s on port %d at %.2fx", runName, port, speed));
+        replay.thread.join();
+    }
+
+    private void runReplayLoop() {
+        /*
+         * Publish each record when its (scaled) robot time comes around. A command
+         * wakes the thread early; it then re-times playback from the current record.
+         */
+        boolean haveRecord = false;
+        boolean reanchor = true;
+        long seenVersion = -1;
+        long anchorNanos = 0;
+        long anchorUs = 0;
+        try {
+            while (true) {
+                long seek;
+                double currentSpeed;
+                synchronized (this) {
+                    while (running && paused && seekUs == NO_SEEK) {
+                        wait();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    if (version != seenVersion) {
+                        seenVersion = version;
+                        reanchor = true;
+                    }
+                    seek = seekUs;
+                    seekUs = NO_SEEK;
+                    currentSpeed = speed;
+                }
+                if (seek != NO_SEEK) {
+                    reader.seek(seek);
+                    haveRecord = false;
+                }
+                if (!haveRecord) {
+                    if (!reader.next()) {
+                        // End of the recording: hold here until SEEK (or close).
+                        synchronized (this) {
+                            paused = true;
+                        }
+                        continue;
+                    }
+                    haveRecord = true;
+                }
+                long recordUs = reader.timestampUs();
+                if (reanchor) {
+                    anchorNanos = System.nanoTime();
+                    anchorUs = recordUs;
+                    reanchor = false;
+                }
+                long dueNanos =
+                        anchorNanos + (long) ((recordUs - anchorUs) * 1000.0 / currentSpeed);
+                if (!sleepUntil(dueNanos, seenVersion)) {
+                    continue;
+                }
+                server.setSnapshot(reader.read(builder), recordUs);
+                haveRecord = false;
+            }
+        } catch (IOException e) {
+            System.err.println("Replay stopped: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean sleepUntil(long dueNanos, long seenVersion)
+            throws InterruptedException {
+        // False when a command (or close) arrived first.
+        while (running && version == seenVersion) {
+            long leftNanos = dueNanos - System.nanoTime();
+            if (leftNanos <= 0) {
+                return true;
+            }
+            wait(leftNanos / 1_000_000L, (int) (leftNanos % 1_000_000L));
+        }
+        return false;
+    }
+
+    private static double parseDouble(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-resolution summary of every numeric field: min, max, sum and count per bucket.
+ *
+ * One 100 ms bucket stands for 25 samples of a 250 Hz loop, so a long graph can be
+ * backfilled from a few hundred buckets instead of every raw sample. Buckets live in a
+ * fixed ring (sized from a time span or a memory budget); the oldest bucket is reused
+ * when it is full.
+ *
+ * The writer (publish path) fills a private open bucket and only takes the lock when a
+ * bucket closes, so readers see complete buckets only.
+ */
+final class RollupTier {
+    // Bytes per field per bucket: min, max, sum (doubles) and count (int).
+    private static final int FIELD_BYTES = 8 * 3 + 4;
+
+    private final long resolutionUs;
+    // Catalog index -> column in the bucket arrays (-1 for fields without history).
+    private final int[] columns;
+    private final int width;
+    private final int capacity;
+    // Closed buckets: start time per slot, then width columns per slot.
+    private final long[] startUs;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final int[] counts;
+    private int first;
+    private int size;
+    // Open bucket (writer only).
+    private long openStartUs = Long.MIN_VALUE;
+    private final double[] openMin;
+    private final double[] openMax;
+    private final double[] openSum;
+    private final int[] openCounts;
+
+    /**
+     * Buckets of width fields that fit in budgetKb (at least 2).
+     */
+    static int bucketsFor(int width, int budgetKb) {
+        long bucketBytes = 8 + (long) width * FIELD_BYTES;
+        return (int) Math.max(2, (long) budgetKb * 1024 / bucketBytes);
+    }
+
+    /**
+     * Create a tier for the given columns with a ring of buckets of resolutionUs each.
+     */
+    RollupTier(int[] columns, int width, long resolutionUs, int buckets) {
+        this.resolutionUs = resolutionUs;
+        this.columns = columns;
+        this.width = width;
+        this.capacity = Math.max(2, buckets);
+        this.startUs = new long[capacity];
+        this.min = new double[capacity * width];
+        this.max = new double[capacity * width];
+        this.sum = new double[capacity * width];
+        this.counts = new int[capacity * width];
+        this.openMin = new double[width];
+        this.openMax = new double[width];
+        this.openSum = new double[width];
+        this.openCounts = new int[width];
+    }
+
+    /**
+     * Bucket width in microseconds.
+     */
+    long resolutionUs() {
+        return resolutionUs;
+    }
+
+    /**
+     * Start the bucket holding timestampUs, closing the open one if time moved past it.
+     */
+    void advance(long timestampUs) {
+        long bucket = Math.floorDiv(timestampUs, resolutionUs) * resolutionUs;
+        if (bucket == openStartUs) {
+            return;
+        }
+        if (openStartUs != Long.MIN_VALUE) {
+            close();
+        }
+        openStartUs = bucket;
+        Arrays.fill(openCounts, 0);
+    }
+
+    /**
+     * Add one sample of a catalog field to the open bucket (call advance first).
+     */
+    void add(int field, double value) {
+        int column = columns[field];
+        if (column < 0 || Double.isNaN(value)) {
+            return;
+        }
+        if (openCounts[column] == 0) {
+            openMin[column] = value;
+            openMax[column] = value;
+            openSum[column] = value;
+        } else {
+            openMin[column] = Math.min(openMin[column], value);
+            openMax[column] = Math.max(openMax[column], value);
+            openSum[column] += value;
+        }
+        openCounts[column]++;
+    }
+
+    /**
+     * Add the closed buckets of one field that start in [fromUs, toUs] to a range.
+     */
+    synchronized void read(int field, long fromUs, long toUs, HistoryRange out) {
+        int column = columns[field];
+        for (int i = 0; i < size; i++) {
+            int slot = (first + i) % capacity;
+            long start = startUs[slot];
+            if (start < fromUs) {
+                continue;
+            }
+            if (start > toUs) {
+                break;
+            }
+            int at = slot * width + column;
+            if (counts[at] > 0) {
+                out.add(start, min[at], max[at], sum[at], counts[at]);
+            }
+        }
+    }
+
+    private void close() {
+        synchronized (this) {
+            if (size == capacity) {
+                // Full: the oldest bucket is recorded over.
+                first = (first + 1) % capacity;
+                size--;
+            }
+            int slot = (first + size) % capacity;
+            startUs[slot] = openStartUs;
+            int base = slot * width;
+            for (int column = 0; column < width; column++) {
+                min[base + column] = openMin[column];
+                max[base + column] = openMax[column];
+                sum[base + column] = openSum[column];
+                counts[base + column] = openCounts[column];
+            }
+            size++;
+        }
+    }
+}
@@ -7,17 +7,93 @@ package org.firstinspires.ftc.teamcode.telelib;
  * The JSON file is the rulebook; this class is one line in that rulebook.
  */
 public class SchemaField {
+    /** Number format for doubles put through a FieldHandle when the schema gives none. */
+    public static final String DEFAULT_FORMAT = "%.3f";
+    /** Priority class: never shed while the client still gets frames. */
+    public static final int PRIORITY_CRITICAL = 0;
+    /** Priority class: the default; shed when a client falls further behind. */
+    public static final int PRIORITY_NORMAL = 1;
+    /** Priority class: sent at its own lower rate and shed first. */
+    public static final int PRIORITY_BULK = 2;
+    /** Send rate of bulk fields that set no max_rate_hz of their own. */
+    public static final double DEFAULT_BULK_RATE_HZ = 2.0;
+    // Schema names of the priority classes, indexed by PRIORITY_*.
+    private static final String[] PRIORITY_NAMES = {"critical", "normal", "bulk"};
+
     public final String name;
     public final String type;
     public final String unit;
+    // Optional fixed-point step for binary clients (0 = send raw doubles).
+    public final double quantum;
+    // Format for put(FieldHandle, double), ex: "%.2f".
+    public final String format;
+    // Priority class (PRIORITY_*); lower classes are shed first when a client falls behind.
+    public final int priority;
+    // Most frames per second that carry this field (0 = every frame).
+    public final double maxRateHz;
 
     /**
      * Create a schema field from the JSON name/type/unit triplet.
      */
     public SchemaField(String name, String type, String unit) {
+        this(name, type, unit, 0.0);
+    }
+
+    /**
+     * Create a schema field with a fixed-point quantum (ex: 0.001 sends whole thousandths).
+     */
+    public SchemaField(String name, String type, String unit, double quantum) {
+        this(name, type, unit, quantum, DEFAULT_FORMAT);
+    }
+
+    /**
+     * Create a schema field with a quantum and the number format used by FieldHandle puts.
+     */
+    public SchemaField(String name, String type, String unit, double quantum, String format) {
+        this(name, type, unit, quantum, format, PRIORITY_NORMAL, 0.0);
+    }
+
+    /**
+     * Create a schema field with a priority class and a per-field rate cap (0 = none).
+     */
+    public SchemaField(
+            String name,
+            String type,
+            String unit,
+            double quantum,
+            String format,
+            int priority,
+            double maxRateHz) {
         // Store the field info exactly as defined in the JSON schema.
         this.name = name;
         this.type = type;
         this.unit = unit;
+        this.quantum = quantum > 0 ? quantum : 0.0;
+        this.format = format == null || format.isEmpty() ? DEFAULT_FORMAT : format;
+        this.priority = Math.max(PRIORITY_CRITICAL, Math.min(PRIORITY_BULK, priority));
+        // Bulk fields without a cap of their own still go out at a low rate.
+        this.maxRateHz =
+                maxRateHz > 0
+                        ? maxRateHz
+                        : this.priority == PRIORITY_BULK ? DEFAULT_BULK_RATE_HZ : 0.0;
+    }
+
+    /**
+     * PRIORITY_* constant for a schema name ("critical", "normal", "bulk"), or -1.
+     */
+    public static int parsePriority(String name) {
+        for (int i = 0; i < PRIORITY_NAMES.length; i++) {
+            if (PRIORITY_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Schema name of a PRIORITY_* constant.
+     */
+    public static String priorityName(int priority) {
+        return PRIORITY_NAMES[priority];
     }
 }
@@ -10,8 +10,12 @@ public class SchemaTelemetryBus implements TelemetryBus {
     private boolean errorLogged;
 
     public SchemaTelemetryBus(HardwareMap hardwareMap, String schemaPathOrJson) {
+        this(hardwareMap, TelemetrySchema.fromConfig(hardwareMap, schemaPathOrJson));
+    }
+
+    public SchemaTelemetryBus(HardwareMap hardwareMap, TelemetrySchema schema) {
         ConfigRegistry config = new ConfigRegistry();
-        this.service = new SchemaTelemetryService(hardwareMap, schemaPathOrJson, config);
+        this.service = new SchemaTelemetryService(hardwareMap, schema, config);
         this.configRegistry = new TelelibConfigRegistry(config);
     }
 
@@ -75,6 +79,67 @@ public class SchemaTelemetryBus implements TelemetryBus {
         }
     }
 
+    @Override
+    public FieldHandle field(String name) {
+        if (!enabled) {
+            return FieldHandle.detached(name);
+        }
+        try {
+            return service.field(name);
+        } catch (RuntimeException ex) {
+            disableWithError(ex);
+            return FieldHandle.detached(name);
+        }
+    }
+
+    @Override
+    public void put(FieldHandle field, double value) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            service.put(field, value);
+        } catch (RuntimeException ex) {
+            disableWithError(ex);
+        }
+    }
+
+    @Override
+    public void put(FieldHandle field, double value, String format) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            service.put(field, value, format);
+        } catch (RuntimeException ex) {
+            disableWithError(ex);
+        }
+    }
+
+    @Override
+    public void put(FieldHandle field, long value) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            service.put(field, value);
+        } catch (RuntimeException ex) {
+            disableWithError(ex);
+        }
+    }
+
+    @Override
+    public void put(FieldHandle field, CharSequence value) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            service.put(field, value);
+        } catch (RuntimeException ex) {
+            disableWithError(ex);
+        }
+    }
+
     @Override
     public void publish() {
         if (!enabled) {
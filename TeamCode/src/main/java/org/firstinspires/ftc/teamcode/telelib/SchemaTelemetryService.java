@@ -2,6 +2,9 @@ package org.firstinspires.ftc.teamcode.telelib;
 
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.util.RobotLog;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Schema-driven telemetry publisher with name/value puts.
@@ -10,12 +13,48 @@ import com.qualcomm.robotcore.util.RobotLog;
  * checks them against the JSON schema, and sends the data to the laptop.
  */
 public class SchemaTelemetryService implements AutoCloseable {
+    /** Folder (inside the app files dir) where flight recorder segments are written. */
+    public static final String RECORDING_DIR = "telelib/recordings";
+    // Spare buffers on top of the ones held by the server's sample ring.
+    private static final int SNAPSHOT_POOL_SIZE = 4;
+    // Loops the publish thread may fall behind by before async publish starts dropping.
+    private static final int ASYNC_QUEUE_CAPACITY = 16;
+    // Reserved fields added after the schema's own when "self_stats" is true.
+    private static final String[] SELF_STATS_FIELDS = {
+        "_telelib.publish_us",
+        "_telelib.publish_p99_us",
+        "_telelib.clients",
+        "_telelib.bytes_sent",
+        "_telelib.frames_dropped",
+        "_telelib.queue_bytes"
+    };
+    private static final String[] SELF_STATS_TYPES = {
+        "double", "double", "long", "long", "long", "long"
+    };
+    private static final String[] SELF_STATS_UNITS = {"us", "us", "", "B", "", "B"};
+    // The p99 walks every histogram bucket, so refresh it at most this often.
+    private static final long P99_REFRESH_NANOS = 100_000_000L;
     private final TelemetrySchema schema;
     private final FieldCatalog catalog;
     private final TelemetryServer server;
     private final ConfigRegistry configRegistry;
-    private TelemetrySnapshotBuilder builder;
+    private final TelemetrySnapshotBuilder builder;
+    // Compressed history of numeric fields (null when history_kb is 0).
+    private final TelemetryHistory history;
+    // Memory-mapped recording of every published snapshot (null when recorder_mb is 0).
+    private final FlightRecorder recorder;
+    // Catalog index of the first _telelib.* field, or -1 when self_stats is off.
+    private final int selfStatsIndex;
+    // Publish thread for async_publish (null when snapshots are published on the loop thread).
+    private final AsyncPublisher asyncPublisher;
+    // Writes the _telelib.* fields on the publish thread (async_publish only).
+    private final TelemetrySnapshotBuilder asyncBuilder;
+    private volatile long lastPublishNanos;
+    private double publishP99Us;
+    private long lastP99Nanos;
     private boolean started;
+    // Set by the first begin(); puts before it are a usage error (loop thread only).
+    private boolean begun;
 
     /**
      * Create a telemetry service backed by a schema file or raw JSON string.
@@ -30,17 +69,87 @@ public class SchemaTelemetryService implements AutoCloseable {
     public SchemaTelemetryService(
             HardwareMap hardwareMap, String schemaPathOrJson, ConfigRegistry configRegistry) {
         // Load the schema (allowed fields + port) from JSON.
-        this.schema = TelemetrySchema.fromConfig(hardwareMap, schemaPathOrJson);
+        this(
+                hardwareMap,
+                TelemetrySchema.fromConfig(hardwareMap, schemaPathOrJson),
+                configRegistry);
+    }
+
+    /**
+     * Create a telemetry service from a schema that is already loaded (or generated).
+     */
+    public SchemaTelemetryService(
+            HardwareMap hardwareMap, TelemetrySchema schema, ConfigRegistry configRegistry) {
+        this.schema = schema;
         // Build a fixed list of fields so every data line matches the same order.
         this.catalog = new FieldCatalog();
         for (SchemaField field : schema.getFields()) {
-            catalog.add(field.name, field.type, field.unit);
+            catalog.add(field);
+        }
+        // Reserved fields go last, so the schema's own indexes do not move.
+        this.selfStatsIndex = schema.isSelfStats() ? catalog.size() : -1;
+        if (schema.isSelfStats()) {
+            for (int i = 0; i < SELF_STATS_FIELDS.length; i++) {
+                catalog.add(
+                        new SchemaField(
+                                SELF_STATS_FIELDS[i],
+                                SELF_STATS_TYPES[i],
+                                SELF_STATS_UNITS[i],
+                                0.0));
+            }
         }
         this.configRegistry = configRegistry;
+        // One reusable builder backed by a small pool of snapshot buffers.
+        SnapshotPool pool =
+                new SnapshotPool(
+                        catalog.size(),
+                        SNAPSHOT_POOL_SIZE + (schema.isAsyncPublish() ? ASYNC_QUEUE_CAPACITY : 0));
+        this.builder = new TelemetrySnapshotBuilder(pool);
+        this.asyncPublisher =
+                schema.isAsyncPublish()
+                        ? new AsyncPublisher(
+                                ASYNC_QUEUE_CAPACITY, this::dispatchQueued, this::asyncFailed)
+                        : null;
+        this.asyncBuilder = schema.isAsyncPublish() ? new TelemetrySnapshotBuilder(pool) : null;
+        this.history =
+                schema.getHistoryKb() > 0
+                        ? new TelemetryHistory(
+                                catalog,
+                                schema.getHistoryKb(),
+                                schema.getRollup100msKb(),
+                                schema.getRollup1sKb())
+                        : null;
+        // Without a HardwareMap (JSON-only setups) there is no app files dir to record to.
+        if (schema.getRecorderMb() > 0 && hardwareMap == null) {
+            RobotLog.ww("SchemaTelemetry", "recorder_mb set but no HardwareMap; not recording");
+        }
+        this.recorder =
+                schema.getRecorderMb() > 0 && hardwareMap != null
+                        ? new FlightRecorder(
+                                new File(hardwareMap.appContext.getFilesDir(), RECORDING_DIR),
+                                catalog,
+                                schema.getRecorderMb())
+                        : null;
         // Start the TCP server that the laptop will connect to.
         this.server =
                 new TelemetryServer(
-                        schema.getPort(), catalog, configRegistry, schema.getMaxRateHz());
+                        schema.getPort(),
+                        catalog,
+                        configRegistry,
+                        schema.getMaxRateHz(),
+                        schema.getSampleBuffer());
+        // HIST requests from the dashboard are answered from the same history.
+        server.setHistory(history);
+        server.setSessionFailureHandler(this::sessionFailed);
+        server.setFailureHandler(this::serverFailed);
+        if (schema.getUdpPort() > 0) {
+            // One encoded datagram per tick for every UDP viewer.
+            server.enableUdp(
+                    schema.getUdpPort(),
+                    schema.getUdpGroup(),
+                    schema.getUdpRateHz(),
+                    this::udpFailed);
+        }
     }
 
     /**
@@ -52,6 +161,17 @@ public class SchemaTelemetryService implements AutoCloseable {
         }
         // Begin listening for laptop connections.
         server.start();
+        if (recorder != null) {
+            try {
+                recorder.start();
+            } catch (IOException e) {
+                // Telemetry still works without a recording; just say why.
+                RobotLog.ee("SchemaTelemetry", e, "Flight recorder disabled");
+            }
+        }
+        if (asyncPublisher != null) {
+            asyncPublisher.start();
+        }
         started = true;
     }
 
@@ -59,8 +179,9 @@ public class SchemaTelemetryService implements AutoCloseable {
      * Begin a new loop snapshot; call before put(...).
      */
     public void begin() {
-        // Start a new "snapshot" for this loop.
-        builder = new TelemetrySnapshotBuilder(catalog.size());
+        // Start a new "snapshot" for this loop (a recycled buffer, cleared).
+        builder.begin();
+        begun = true;
     }
 
     /**
@@ -89,7 +210,7 @@ public class SchemaTelemetryService implements AutoCloseable {
             handleUnknown(name);
             return;
         }
-        // Format the number and save it into the snapshot.
+        // Save the raw number and its format; text is rendered per client frame.
         builder.set(idx, value, format);
     }
 
@@ -99,18 +220,107 @@ public class SchemaTelemetryService implements AutoCloseable {
     public void put(String name, long value) {
         // This overload is for timestamps or counters (no decimals).
         requireBuilder();
-        put(name, String.valueOf(value));
+        Integer idx = schema.indexOf(name);
+        if (idx == null) {
+            handleUnknown(name);
+            return;
+        }
+        // Store the raw number; it is only turned into text when a client needs it.
+        builder.set(idx, value);
+    }
+
+    /**
+     * Resolve a field name once at init, for the put(FieldHandle, ...) overloads.
+     *
+     * Unknown names throw in strict mode; otherwise they log a warning and return a
+     * detached handle whose puts are ignored.
+     */
+    public FieldHandle field(String name) {
+        try {
+            return schema.field(name);
+        } catch (IllegalArgumentException e) {
+            handleUnknown(name);
+            return FieldHandle.detached(name);
+        }
+    }
+
+    /**
+     * Put a number through a handle, formatted with the field's schema format.
+     */
+    public void put(FieldHandle field, double value) {
+        // No name lookup: the handle already knows its slot and compiled format.
+        requireBuilder();
+        if (field.index >= 0) {
+            builder.set(field.index, value, field.format);
+        }
+    }
+
+    /**
+     * Put a number through a handle with its own format (ex: "%.2f").
+     */
+    public void put(FieldHandle field, double value, String format) {
+        requireBuilder();
+        if (field.index >= 0) {
+            builder.set(field.index, value, format);
+        }
+    }
+
+    /**
+     * Put a long value through a handle.
+     */
+    public void put(FieldHandle field, long value) {
+        requireBuilder();
+        if (field.index >= 0) {
+            builder.set(field.index, value);
+        }
+    }
+
+    /**
+     * Put a text value through a handle (a String is stored as is, no copy).
+     */
+    public void put(FieldHandle field, CharSequence value) {
+        requireBuilder();
+        if (field.index >= 0) {
+            builder.set(field.index, value == null ? null : value.toString());
+        }
     }
 
     /**
      * Publish the current snapshot to connected dashboard clients.
+     *
+     * With "async_publish": true (after start()) this only stamps the loop time and queues
+     * the snapshot; the TelemetryPublish thread does the rest. A full queue drops the
+     * snapshot and counts it instead of waiting. If that thread fails it is logged at once
+     * and later publishes run on the loop thread, as without async_publish.
      */
     public void publish() {
-        if (builder == null) {
+        if (!builder.isActive()) {
             return;
         }
-        // Send the latest snapshot to all connected clients.
-        server.setSnapshot(builder.build());
+        long start = System.nanoTime();
+        if (asyncPublisher != null && started && asyncPublisher.failure() == null) {
+            TelemetrySnapshot snapshot = builder.build();
+            // Robot time is when the loop published, not when the publish thread got to it.
+            snapshot.stamp(-1, server.ring().nowUs());
+            if (!asyncPublisher.offer(snapshot)) {
+                snapshot.release();
+                server.metrics().publishDropped.increment();
+            }
+        } else {
+            if (selfStatsIndex >= 0) {
+                putSelfStats(builder, start);
+            }
+            dispatch(builder.build(), server.ring().nowUs());
+        }
+        lastPublishNanos = System.nanoTime() - start;
+        server.metrics().publish.record(lastPublishNanos);
+    }
+
+    /**
+     * Compressed history of every numeric field, or null when the schema disables it.
+     */
+    public TelemetryHistory getHistory() {
+        return history;
     }
 
     /**
@@ -118,8 +328,102 @@ public class SchemaTelemetryService implements AutoCloseable {
      */
     @Override
     public void close() {
+        if (asyncPublisher != null) {
+            // Publishes what is still queued, so the recorder gets the last loops too.
+            asyncPublisher.close();
+        }
         // Stop the server cleanly.
         server.close();
+        if (recorder != null) {
+            // Writes what is still queued and flushes the last segment.
+            recorder.close();
+            if (recorder.failure() != null) {
+                RobotLog.ee("SchemaTelemetry", recorder.failure(), "Flight recorder stopped early");
+            }
+            if (recorder.oversizedSnapshots() > 0) {
+                RobotLog.ww(
+                        "SchemaTelemetry",
+                        "Flight recorder left out %d snapshots larger than a segment",
+                        recorder.oversizedSnapshots());
+            }
+        }
+    }
+
+    private void dispatch(TelemetrySnapshot snapshot, long timestampUs) {
+        if (history == null && recorder == null) {
+            // Hand the snapshot to the server; the server now owns this buffer.
+            server.setSnapshot(snapshot, timestampUs);
+            return;
+        }
+        // Keep our own reference so history and recorder see the stamped robot time.
+        snapshot.retain();
+        try {
+            server.setSnapshot(snapshot, timestampUs);
+            if (history != null) {
+                history.record(snapshot);
+            }
+            if (recorder != null) {
+                recorder.offer(snapshot);
+            }
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    private void dispatchQueued(TelemetrySnapshot snapshot) {
+        // Publish thread: this thread holds the only reference until setSnapshot.
+        long start = System.nanoTime();
+        if (selfStatsIndex >= 0) {
+            asyncBuilder.reopen(snapshot);
+            putSelfStats(asyncBuilder, start);
+            asyncBuilder.build();
+        }
+        dispatch(snapshot, snapshot.timestampUs());
+        server.metrics().dispatch.record(System.nanoTime() - start);
+    }
+
+    private void asyncFailed(RuntimeException e) {
+        // Publish thread: it has stopped, and publish() now dispatches on the loop thread.
+        RobotLog.ee("SchemaTelemetry", e, "Async publish failed; publishing on the loop thread");
+    }
+
+    private void sessionFailed(RuntimeException e) {
+        // Server IO thread: that client was closed, everyone else keeps streaming.
+        RobotLog.ee("SchemaTelemetry", e, "Telemetry client dropped after an error");
+    }
+
+    private void serverFailed(IOException e) {
+        // Server IO thread: no dashboard can connect; publish() and the recorder carry on.
+        RobotLog.ee("SchemaTelemetry", e, "Telemetry server stopped");
+    }
+
+    private void udpFailed(IOException e) {
+        // Server IO thread: UDP requests are refused, TCP clients keep streaming.
+        RobotLog.ee("SchemaTelemetry", e, "UDP stream disabled");
+    }
+
+    private void putSelfStats(TelemetrySnapshotBuilder target, long nowNanos) {
+        /*
+         * Fill the reserved fields from the counters (the publish time is the previous
+         * call's, since this one is still running).
+         */
+        TelemetryMetrics metrics = server.metrics();
+        if (nowNanos - lastP99Nanos >= P99_REFRESH_NANOS) {
+            publishP99Us = metrics.publish.quantileNanos(0.99) / 1000.0;
+            lastP99Nanos = nowNanos;
+        }
+        long queueBytes = 0;
+        List<SessionStats> sessions = server.getSessionStats();
+        for (SessionStats stats : sessions) {
+            queueBytes += stats.queuedBytes;
+        }
+        int i = selfStatsIndex;
+        target.set(i, lastPublishNanos / 1000.0, "%.1f");
+        target.set(i + 1, publishP99Us, "%.1f");
+        target.set(i + 2, (long) sessions.size());
+        target.set(i + 3, metrics.bytesSent.sum());
+        target.set(i + 4, metrics.framesDropped.sum());
+        target.set(i + 5, queueBytes);
     }
 
     private void handleUnknown(String name) {
@@ -131,8 +435,9 @@ public class SchemaTelemetryService implements AutoCloseable {
     }
 
     private void requireBuilder() {
-        if (builder == null) {
-            // This catches mistakes like put(...) before begin().
+        if (!begun) {
+            // This catches mistakes like put(...) before begin(). A put after publish()
+            // is allowed; the builder starts the next snapshot for it.
             throw new IllegalStateException("Call begin() before putting telemetry values.");
         }
     }
@@ -0,0 +1,78 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Locale;
+
+/**
+ * Send-rate and queue numbers for one connected dashboard, as measured by the server.
+ */
+public final class SessionStats {
+    /** Client address, for example "/192.168.43.10:51234". */
+    public final String remoteAddress;
+    /** Rate the client asked for (after the max_rate_hz cap), in Hz. 0 when not subscribed. */
+    public final double requestedHz;
+    /** Measured frames per second (moving average). */
+    public final double measuredHz;
+    /** Average change in time between consecutive frames, in milliseconds. */
+    public final double jitterMs;
+    /** Frames sent since the client connected. */
+    public final long sentFrames;
+    /** Frames skipped because the client was not keeping up or a HIST reply was going out. */
+    public final long droppedFrames;
+    /** Bytes written to the client's socket. */
+    public final long bytesSent;
+    /** Published snapshots never sent because a newer one replaced them first. */
+    public final long coalescedFrames;
+    /** Bytes waiting in the client's send queue right now. */
+    public final int queuedBytes;
+    /** Largest send queue seen for this client, in bytes. */
+    public final int maxQueuedBytes;
+    /** Priority classes left out of this client's frames: 0 none, 1 bulk, 2 normal and bulk. */
+    public final int shedLevel;
+    /** Rate this client is sent at right now (lowered while its link is congested), in Hz. */
+    public final double effectiveHz;
+
+    public SessionStats(
+            String remoteAddress,
+            double requestedHz,
+            double measuredHz,
+            double jitterMs,
+            long sentFrames,
+            long droppedFrames,
+            long bytesSent,
+            long coalescedFrames,
+            int queuedBytes,
+            int maxQueuedBytes,
+            int shedLevel,
+            double effectiveHz) {
+        this.remoteAddress = remoteAddress;
+        this.requestedHz = requestedHz;
+        this.measuredHz = measuredHz;
+        this.jitterMs = jitterMs;
+        this.sentFrames = sentFrames;
+        this.droppedFrames = droppedFrames;
+        this.bytesSent = bytesSent;
+        this.coalescedFrames = coalescedFrames;
+        this.queuedBytes = queuedBytes;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.shedLevel = shedLevel;
+        this.effectiveHz = effectiveHz;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "%s requested=%.1fHz effective=%.1fHz measured=%.1fHz jitter=%.2fms sent=%d"
+                        + " dropped=%d bytes=%d coalesced=%d queue=%d",
+                remoteAddress,
+                requestedHz,
+                effectiveHz,
+                measuredHz,
+                jitterMs,
+                sentFrames,
+                droppedFrames,
+                bytesSent,
+                coalescedFrames,
+                queuedBytes);
+    }
+}
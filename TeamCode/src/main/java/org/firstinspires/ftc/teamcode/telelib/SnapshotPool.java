@@ -0,0 +1,54 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Small pool of reusable snapshot buffers.
+ *
+ * Ownership rule: a snapshot starts with one reference when it is acquired.
+ * Every thread that keeps reading it must retain() first and release() when done.
+ * When the last reference is released the buffer comes back here for the next loop,
+ * so a running robot stops creating telemetry garbage.
+ */
+final class SnapshotPool {
+    private final int fieldCount;
+    private final TelemetrySnapshot[] free;
+    private int freeCount;
+
+    /**
+     * Create a pool for snapshots of the given size that keeps up to maxIdle spare buffers.
+     */
+    SnapshotPool(int fieldCount, int maxIdle) {
+        this.fieldCount = fieldCount;
+        this.free = new TelemetrySnapshot[Math.max(0, maxIdle)];
+    }
+
+    /**
+     * Take a cleared buffer (one reference, owned by the caller).
+     */
+    TelemetrySnapshot acquire() {
+        TelemetrySnapshot snapshot = null;
+        synchronized (this) {
+            if (freeCount > 0) {
+                snapshot = free[--freeCount];
+                free[freeCount] = null;
+            }
+        }
+        if (snapshot == null) {
+            // Pool is empty (startup or a slow reader): grow by one buffer.
+            snapshot = new TelemetrySnapshot(this, fieldCount);
+        }
+        snapshot.reset();
+        return snapshot;
+    }
+
+    /**
+     * Return a buffer whose last reference was released.
+     */
+    void recycle(TelemetrySnapshot snapshot) {
+        synchronized (this) {
+            if (freeCount < free.length) {
+                free[freeCount++] = snapshot;
+            }
+        }
+        // Extra buffers beyond maxIdle are simply dropped for the GC.
+    }
+}
@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer, single-consumer queue of snapshot references.
+ *
+ * The loop thread offers and one background thread polls. offer() never blocks or
+ * allocates: when the queue is full it returns false and the caller keeps its reference.
+ */
+final class SnapshotQueue {
+    private final TelemetrySnapshot[] slots;
+    private final int mask;
+    // Next slot to poll (consumer) and next slot to fill (producer).
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Create a queue holding at least minCapacity snapshots (rounded up to a power of two).
+     */
+    SnapshotQueue(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.slots = new TelemetrySnapshot[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Hand a reference to the consumer (producer thread only). False when full.
+     */
+    boolean offer(TelemetrySnapshot snapshot) {
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            return false;
+        }
+        slots[(int) (t & mask)] = snapshot;
+        /*
+         * Volatile store: the slot is visible before the consumer sees the new tail, and a
+         * producer that checks the consumer's "parked" flag next cannot read it first.
+         */
+        tail.set(t + 1);
+        return true;
+    }
+
+    /**
+     * Take the oldest reference, or null when empty (consumer thread only).
+     */
+    TelemetrySnapshot poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        TelemetrySnapshot snapshot = slots[index];
+        slots[index] = null;
+        head.lazySet(h + 1);
+        return snapshot;
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,126 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring of the most recently published snapshots.
+ *
+ * Every publish gets the next sequence number, so a reader that remembers the last
+ * sequence it sent can pick up every sample published since then (lossless mode).
+ * One writer (the loop thread) and any number of readers.
+ *
+ * The ring owns one reference to each stored snapshot. Readers use acquire(...) to get
+ * their own reference, and the oldest entry is released when it is overwritten.
+ */
+final class SnapshotRing {
+    private final AtomicReferenceArray<TelemetrySnapshot> slots;
+    private final int mask;
+    private final long epochNanos = System.nanoTime();
+    private volatile long head;
+
+    /**
+     * Create a ring holding at least minCapacity snapshots (rounded up to a power of two).
+     */
+    SnapshotRing(int minCapacity, int fieldCount) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        // Sequence 0 is a blank snapshot so readers always have something to send.
+        slots.set(0, TelemetrySnapshot.empty(fieldCount));
+    }
+
+    /**
+     * Number of snapshots the ring can hold.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Sequence number of the newest snapshot (0 before the first publish).
+     */
+    long head() {
+        return head;
+    }
+
+    /**
+     * Oldest sequence number that may still be in the ring.
+     */
+    long oldest() {
+        return Math.max(0, head - mask);
+    }
+
+    /**
+     * Robot monotonic time in microseconds since this ring was created.
+     */
+    long nowUs() {
+        return (System.nanoTime() - epochNanos) / 1000L;
+    }
+
+    /**
+     * Stamp and store a snapshot (single writer). Takes over the caller's reference.
+     */
+    void publish(TelemetrySnapshot snapshot) {
+        publish(snapshot, nowUs());
+    }
+
+    /**
+     * Same as publish(snapshot), with a given robot time (replaying a recording).
+     */
+    void publish(TelemetrySnapshot snapshot, long timestampUs) {
+        long sequence = head + 1;
+        snapshot.stamp(sequence, timestampUs);
+        TelemetrySnapshot previous = slots.getAndSet((int) (sequence & mask), snapshot);
+        head = sequence;
+        if (previous != null) {
+            // The overwritten entry goes back to its pool once readers are done with it.
+            previous.release();
+        }
+    }
+
+    /**
+     * Get a reference to the snapshot with this sequence, or null if it was overwritten.
+     */
+    TelemetrySnapshot acquire(long sequence) {
+        int index = (int) (sequence & mask);
+        TelemetrySnapshot snapshot = slots.get(index);
+        if (snapshot == null || !snapshot.tryRetain()) {
+            return null;
+        }
+        // Still in the slot after we retained it means it is published and cannot be recycled.
+        if (slots.get(index) != snapshot || snapshot.sequence() != sequence) {
+            snapshot.release();
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get a reference to the newest snapshot (null only after clear()).
+     */
+    TelemetrySnapshot acquireLatest() {
+        while (true) {
+            long sequence = head;
+            TelemetrySnapshot snapshot = acquire(sequence);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            if (slots.get((int) (sequence & mask)) == null) {
+                return null;
+            }
+            // The writer lapped us between reading head and the slot; try again.
+        }
+    }
+
+    /**
+     * Release every stored snapshot (server shutdown).
+     */
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            TelemetrySnapshot snapshot = slots.getAndSet(i, null);
+            if (snapshot != null) {
+                snapshot.release();
+            }
+        }
+    }
+}
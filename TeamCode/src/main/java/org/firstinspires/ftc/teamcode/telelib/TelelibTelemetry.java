@@ -1,6 +1,8 @@
 package org.firstinspires.ftc.teamcode.telelib;
 
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import org.firstinspires.ftc.robotcore.external.Func;
@@ -11,12 +13,29 @@ import org.firstinspires.ftc.robotcore.external.Telemetry;
  *
  * This lets existing code keep using telemetry.addData()/update() while also
  * publishing those fields to the TelemetryBus.
+ *
+ * Each caption has a slot that lives across update() cycles, like a labelled mailbox:
+ * addData only drops the newest value in (numbers stay primitive), and the slot remembers
+ * its resolved bus field. A Func is read once per update(); the SDK is given the slot,
+ * which hands back that same value. As in the SDK, Func captions are retained: clear() and
+ * auto-clear keep them, clearAll() and removeItem() drop them. Slots of captions that were
+ * not added in the last cycle are dropped on clearAll(), and on clear() once the table
+ * has doubled, so captions built on the fly ("Loop " + i) do not pile up.
  */
 public class TelelibTelemetry implements Telemetry, AutoCloseable {
     private static final String DEFAULT_NUMBER_FORMAT = "%.3f";
+    // Slot count below which clear() does not look for idle slots.
+    private static final int MIN_SWEEP_SLOTS = 64;
     private final Telemetry delegate;
     private final TelemetryBus bus;
-    private final Map<String, ValueProvider> captured = new LinkedHashMap<>();
+    // One slot per recently added caption; kept across update() cycles.
+    private final Map<String, Slot> slots = new HashMap<>();
+    // Slot count at which the next clear() drops idle slots.
+    private int sweepAt = MIN_SWEEP_SLOTS;
+    // Captions added since the last clear, in addData order.
+    private Slot[] active = new Slot[16];
+    private int activeCount;
+    private long cycle;
     private boolean busStarted;
 
     public TelelibTelemetry(Telemetry delegate, TelemetryBus bus) {
@@ -26,52 +45,78 @@ public class TelelibTelemetry implements Telemetry, AutoCloseable {
 
     @Override
     public Item addData(String caption, String format, Object... args) {
-        capture(caption, () -> String.format(Locale.US, format, args));
-        captureNumeric(caption, format, args);
+        Slot slot = slotFor(caption);
+        if (slot != null) {
+            boolean number = args != null && args.length == 1 && args[0] instanceof Number;
+            if (!number || !slot.setNumber(((Number) args[0]).doubleValue(), format)) {
+                slot.setFormatted(format, args);
+            }
+        }
         return delegate.addData(caption, format, args);
     }
 
     @Override
     public Item addData(String caption, Object value) {
-        capture(caption, () -> value == null ? "" : String.valueOf(value));
-        captureNumeric(caption, value);
+        Slot slot = slotFor(caption);
+        if (slot != null) {
+            if (value instanceof Number) {
+                slot.setNumber(((Number) value).doubleValue(), null);
+            } else {
+                slot.setText(value);
+            }
+        }
         return delegate.addData(caption, value);
     }
 
     @Override
     public <T> Item addData(String caption, Func<T> func) {
-        capture(caption, () -> {
-            T value = func.value();
-            return value == null ? "" : String.valueOf(value);
-        });
-        captureNumeric(caption, func);
-        return delegate.addData(caption, func);
+        Slot slot = slotFor(caption);
+        if (slot == null) {
+            return delegate.addData(caption, func);
+        }
+        // The SDK reads the slot's value, so the Func runs once per update, not twice.
+        slot.setFunc(null, func);
+        slot.item = delegate.addData(caption, slot);
+        return slot.item;
     }
 
     @Override
     public <T> Item addData(String caption, String format, Func<T> func) {
-        capture(caption, () -> {
-            T value = func.value();
-            return String.format(Locale.US, format, value);
-        });
-        captureNumeric(caption, format, func);
-        return delegate.addData(caption, format, func);
+        Slot slot = slotFor(caption);
+        if (slot == null) {
+            return delegate.addData(caption, format, func);
+        }
+        slot.setFunc(format, func);
+        slot.item = delegate.addData(caption, format, slot);
+        return slot.item;
     }
 
     @Override
     public boolean removeItem(Item item) {
+        // A removed Func caption stops being read and mirrored.
+        for (int i = 0; i < activeCount; i++) {
+            Slot slot = active[i];
+            if (item != null && slot.item == item) {
+                slot.func = null;
+                slot.item = null;
+                System.arraycopy(active, i + 1, active, i, activeCount - i - 1);
+                active[--activeCount] = null;
+                slot.cycle = -1;
+                break;
+            }
+        }
         return delegate.removeItem(item);
     }
 
     @Override
     public void clear() {
-        captured.clear();
+        startCycle(true);
         delegate.clear();
     }
 
     @Override
     public void clearAll() {
-        captured.clear();
+        startCycle(false);
         delegate.clearAll();
     }
 
@@ -97,10 +142,14 @@ public class TelelibTelemetry implements Telemetry, AutoCloseable {
 
     @Override
     public boolean update() {
+        // Read every Func once, before the SDK (which reads the slots) and the bus.
+        for (int i = 0; i < activeCount; i++) {
+            active[i].evaluate();
+        }
         boolean result = delegate.update();
         mirrorToBus();
         if (delegate.isAutoClear()) {
-            captured.clear();
+            startCycle(true);
         }
         return result;
     }
@@ -186,89 +235,194 @@ public class TelelibTelemetry implements Telemetry, AutoCloseable {
             busStarted = true;
         }
         bus.begin();
-        for (Map.Entry<String, ValueProvider> entry : captured.entrySet()) {
-            String value = TelemetrySchema.sanitizeCsv(entry.getValue().get());
-            if (!tryPutNumber(entry.getKey(), value)) {
-                bus.put(entry.getKey(), value);
+        for (int i = 0; i < activeCount; i++) {
+            Slot slot = active[i];
+            if (slot.handle == null) {
+                // First time this caption is published: resolve its field once.
+                slot.handle = bus.field(slot.caption);
+            }
+            // Numbers go straight to the bus; only text values are rendered here.
+            if (slot.isNumber) {
+                bus.put(slot.handle, slot.number, slot.numberFormat);
+            } else {
+                bus.put(slot.handle, TelemetrySchema.sanitizeCsv(slot.text()));
             }
         }
         bus.publish();
     }
 
-    private void capture(String caption, ValueProvider provider) {
+    private Slot slotFor(String caption) {
+        /*
+         * Slots outlive update() cycles, so a steady loop only does a map lookup here.
+         * The first addData of a caption in a cycle adds it to the active list; repeats
+         * overwrite its value but keep its position.
+         */
         if (caption == null || caption.isEmpty()) {
-            return;
+            return null;
         }
-        captured.put(caption, provider);
-    }
-
-    private void captureNumeric(String caption, Object value) {
-        if (caption == null || caption.isEmpty()) {
-            return;
+        Slot slot = slots.get(caption);
+        if (slot == null) {
+            slot = new Slot(caption);
+            slots.put(caption, slot);
         }
-        if (value instanceof Number) {
-            captured.put(
-                    caption, new NumericProvider(((Number) value).doubleValue(), DEFAULT_NUMBER_FORMAT));
+        if (slot.cycle != cycle) {
+            slot.cycle = cycle;
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, activeCount * 2);
+            }
+            active[activeCount++] = slot;
         }
-    }
-
-    private void captureNumeric(String caption, String format, Object... args) {
-        if (caption == null || caption.isEmpty()) {
-            return;
+        return slot;
+    }
+
+    private void startCycle(boolean keepFuncs) {
+        /*
+         * Forget this cycle's captions (slots and their field handles stay). Func captions
+         * are retained items in the SDK, so unless everything is cleared they stay active
+         * and are read and mirrored again next update().
+         */
+        cycle++;
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            Slot slot = active[i];
+            if (keepFuncs && slot.func != null) {
+                slot.cycle = cycle;
+                active[kept++] = slot;
+            } else if (!keepFuncs) {
+                slot.func = null;
+                slot.item = null;
+            }
         }
-        if (args != null && args.length == 1 && args[0] instanceof Number) {
-            captured.put(
-                    caption, new NumericProvider(((Number) args[0]).doubleValue(), format));
+        Arrays.fill(active, kept, activeCount, null);
+        activeCount = kept;
+        if (!keepFuncs || slots.size() > sweepAt) {
+            dropIdleSlots();
         }
     }
 
-    private <T> void captureNumeric(String caption, Func<T> func) {
-        if (caption == null || caption.isEmpty()) {
-            return;
+    private void dropIdleSlots() {
+        // Slots not added in the cycle that just ended go, with their field handles.
+        Iterator<Slot> it = slots.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().cycle < cycle - 1) {
+                it.remove();
+            }
         }
-        T value = func.value();
-        if (value instanceof Number) {
-            captured.put(
-                    caption, new NumericProvider(((Number) value).doubleValue(), DEFAULT_NUMBER_FORMAT));
+        sweepAt = Math.max(MIN_SWEEP_SLOTS, slots.size() * 2);
+    }
+
+    /**
+     * Latest value of one caption. Doubles as the Func handed to the SDK for Func items.
+     */
+    private static final class Slot implements Func<Object> {
+        final String caption;
+        FieldHandle handle;
+        // Cycle in which this slot was last added to the active list.
+        long cycle = -1;
+        boolean isNumber;
+        double number;
+        String numberFormat = DEFAULT_NUMBER_FORMAT;
+        // Text value: value alone, or String.format(format, args).
+        String format;
+        Object value;
+        Object[] args;
+        Func<?> func;
+        // SDK item returned for a Func caption (what removeItem() is given).
+        Item item;
+        // Value of func from the last evaluate().
+        Object funcValue;
+
+        Slot(String caption) {
+            this.caption = caption;
         }
-    }
 
-    private <T> void captureNumeric(String caption, String format, Func<T> func) {
-        if (caption == null || caption.isEmpty()) {
-            return;
+        /**
+         * Store a number; false (nothing stored) when format cannot format a double (ex: "%d").
+         */
+        boolean setNumber(double value, String format) {
+            String compiled = numericFormat(format);
+            if (compiled == null) {
+                return false;
+            }
+            func = null;
+            isNumber = true;
+            number = value;
+            numberFormat = compiled;
+            return true;
         }
-        T value = func.value();
-        if (value instanceof Number) {
-            captured.put(caption, new NumericProvider(((Number) value).doubleValue(), format));
+
+        void setText(Object value) {
+            func = null;
+            isNumber = false;
+            this.format = null;
+            this.value = value;
+            this.args = null;
         }
-    }
 
-    private boolean tryPutNumber(String caption, String value) {
-        ValueProvider provider = captured.get(caption);
-        if (provider instanceof NumericProvider) {
-            NumericProvider numeric = (NumericProvider) provider;
-            bus.put(caption, numeric.value, numeric.format);
-            return true;
+        void setFormatted(String format, Object[] args) {
+            func = null;
+            isNumber = false;
+            this.format = format;
+            this.value = null;
+            this.args = args;
         }
-        return false;
-    }
 
-    private interface ValueProvider {
-        String get();
-    }
+        void setFunc(String format, Func<?> func) {
+            this.func = func;
+            this.format = format;
+            this.funcValue = null;
+        }
 
-    private static final class NumericProvider implements ValueProvider {
-        private final double value;
-        private final String format;
+        void evaluate() {
+            if (func == null) {
+                return;
+            }
+            funcValue = func.value();
+            if (funcValue instanceof Number) {
+                String compiled = numericFormat(format);
+                if (compiled != null) {
+                    isNumber = true;
+                    number = ((Number) funcValue).doubleValue();
+                    numberFormat = compiled;
+                    return;
+                }
+            }
+            isNumber = false;
+        }
 
-        private NumericProvider(double value, String format) {
-            this.value = value;
-            this.format = format;
+        String text() {
+            if (func != null) {
+                if (format != null) {
+                    return String.format(Locale.US, format, funcValue);
+                }
+                return funcValue == null ? "" : String.valueOf(funcValue);
+            }
+            if (format == null) {
+                return value == null ? "" : String.valueOf(value);
+            }
+            return String.format(Locale.US, format, args);
         }
 
         @Override
-        public String get() {
-            return String.format(Locale.US, format, value);
+        public Object value() {
+            // Called by the SDK when it renders the line.
+            return funcValue;
+        }
+
+        private String numericFormat(String format) {
+            if (format == null) {
+                return DEFAULT_NUMBER_FORMAT;
+            }
+            if (format == numberFormat || format.equals(numberFormat)) {
+                return numberFormat;
+            }
+            try {
+                // Cached by NumericFormat, so a steady caption compiles its format once.
+                NumericFormat.compile(format);
+                return format;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
         }
     }
 }
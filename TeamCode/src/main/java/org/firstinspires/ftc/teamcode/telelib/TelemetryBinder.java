@@ -0,0 +1,81 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+
+/**
+ * Publishes @TelemetryField members and registers @Tunable fields of any number of objects.
+ *
+ * The telelib annotation processor writes a small "Name_TelemetryBinding" class next to
+ * every annotated class, with the same put calls you would write by hand. add(...) finds
+ * that class once; after that publishTelemetry(...) is a plain loop over the bindings, with
+ * no reflection and no name lookups (fields are resolved to FieldHandles on first use).
+ */
+public final class TelemetryBinder implements TelemetryPublisher, TelemetryConfigurable {
+    /** Suffix of generated binding classes. */
+    public static final String BINDING_SUFFIX = "_TelemetryBinding";
+
+    private TelemetryPublisher[] publishers = new TelemetryPublisher[0];
+    private TelemetryConfigurable[] configurables = new TelemetryConfigurable[0];
+
+    /**
+     * Bind one object (call at init). Throws IllegalStateException when its class has no
+     * generated binding, which means the annotation processor did not run.
+     */
+    public void add(Object source) {
+        Object binding = createBinding(source);
+        publishers = Arrays.copyOf(publishers, publishers.length + 1);
+        publishers[publishers.length - 1] = (TelemetryPublisher) binding;
+        configurables = Arrays.copyOf(configurables, configurables.length + 1);
+        configurables[configurables.length - 1] = (TelemetryConfigurable) binding;
+    }
+
+    /**
+     * Put every @TelemetryField of every bound object (between begin() and publish()).
+     */
+    @Override
+    public void publishTelemetry(TelemetryBus bus) {
+        for (TelemetryPublisher publisher : publishers) {
+            publisher.publishTelemetry(bus);
+        }
+    }
+
+    /**
+     * Register every @Tunable field of every bound object.
+     */
+    @Override
+    public void registerTunables(LiveConfigRegistry config) {
+        for (TelemetryConfigurable configurable : configurables) {
+            configurable.registerTunables(config);
+        }
+    }
+
+    /**
+     * Enum constant name for generated bindings (null stays null, no allocation).
+     */
+    public static String name(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+    private static Object createBinding(Object source) {
+        // Outer$Inner is generated as Outer_Inner_TelemetryBinding in the same package.
+        Class<?> type = source.getClass();
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        String bindingName =
+                name.substring(0, dot + 1)
+                        + name.substring(dot + 1).replace('$', '_')
+                        + BINDING_SUFFIX;
+        try {
+            return Class.forName(bindingName, true, type.getClassLoader())
+                    .getConstructor(type)
+                    .newInstance(source);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(
+                    "No " + bindingName + ": annotate " + type.getName()
+                            + " and enable the telelib annotation processor",
+                    e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + bindingName, e);
+        }
+    }
+}
@@ -11,6 +11,31 @@ public interface TelemetryBus extends AutoCloseable {
 
     void put(String name, long value);
 
+    /*
+     * The handle methods fall back to the name puts, so buses written before handles
+     * existed still compile; SchemaTelemetryBus overrides them to skip the name lookup.
+     */
+
+    default FieldHandle field(String name) {
+        return FieldHandle.detached(name);
+    }
+
+    default void put(FieldHandle field, double value) {
+        put(field.name, value, field.format.pattern());
+    }
+
+    default void put(FieldHandle field, double value, String format) {
+        put(field.name, value, format);
+    }
+
+    default void put(FieldHandle field, long value) {
+        put(field.name, value);
+    }
+
+    default void put(FieldHandle field, CharSequence value) {
+        put(field.name, value == null ? null : value.toString());
+    }
+
     void publish();
 
     LiveConfigRegistry config();
@@ -0,0 +1,19 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Publish this field (or no-argument getter) every loop through TelemetryBinder.
+ *
+ * Works on numbers, booleans (1/0), Strings, CharSequences and enums (their name). The
+ * member must not be private: the generated binding reads it directly, without reflection.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TelemetryField {
+    /** Schema field name (default: the Java field or method name). */
+    String value() default "";
+}
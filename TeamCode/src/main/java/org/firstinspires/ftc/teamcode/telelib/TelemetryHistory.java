@@ -0,0 +1,384 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+/**
+ * Compressed on-robot history of every numeric field, within a fixed memory budget.
+ *
+ * Think of it as a DVR for telemetry: every published snapshot is recorded, and when
+ * the budget is used up the oldest minutes are recorded over. A steady 200 Hz loop
+ * usually costs a few bytes per field per sample, so a whole match fits in a few MB.
+ *
+ * Next to the raw samples there are two rollup tiers (100 ms and 1 s buckets of
+ * min/max/mean/count, each with its own budget). query(...) answers from the cheapest
+ * tier that is still fine enough, so backfilling a long graph does not decode every sample.
+ * Every bucket holds all numeric fields, so by default each tier is sized for a fixed time
+ * span (2.5 and 10 minutes) rather than a fixed number of bytes.
+ *
+ * record(...) is called from the publish path (one thread) and does not allocate once
+ * the budget is reached. read(...) may be called from any thread.
+ */
+public final class TelemetryHistory {
+    /** Bytes of compressed data per block. */
+    public static final int BLOCK_BYTES = GorillaBlock.WORDS * 8;
+    /** Rollup budget that sizes the tier for its default retention, however wide the catalog. */
+    public static final int AUTO_ROLLUP_KB = -1;
+    /** Default budget for the 100 ms rollup tier (DEFAULT_ROLLUP_100MS_SECONDS of buckets). */
+    public static final int DEFAULT_ROLLUP_100MS_KB = AUTO_ROLLUP_KB;
+    /** Default budget for the 1 s rollup tier (DEFAULT_ROLLUP_1S_SECONDS of buckets). */
+    public static final int DEFAULT_ROLLUP_1S_KB = AUTO_ROLLUP_KB;
+    /** Time the 100 ms tier covers by default: a 2-minute reconnect backfill plus margin. */
+    public static final int DEFAULT_ROLLUP_100MS_SECONDS = 150;
+    /** Time the 1 s tier covers by default. */
+    public static final int DEFAULT_ROLLUP_1S_SECONDS = 600;
+
+    private final FieldHistory[] fields;
+    // Rollup tiers, finest first (a tier with a 0 budget is left out).
+    private final RollupTier[] tiers;
+    private final GorillaBlock[] free;
+    private int freeCount;
+
+    /**
+     * Create a history for the numeric (double/long) fields of a catalog.
+     */
+    public TelemetryHistory(FieldCatalog catalog, int budgetKb) {
+        this(catalog, budgetKb, DEFAULT_ROLLUP_100MS_KB, DEFAULT_ROLLUP_1S_KB);
+    }
+
+    /**
+     * Create a history with explicit budgets for the raw tier and the two rollup tiers.
+     *
+     * A rollup budget of 0 leaves that tier out; AUTO_ROLLUP_KB sizes it for its default
+     * retention (the memory then grows with the number of numeric fields).
+     */
+    public TelemetryHistory(
+            FieldCatalog catalog, int budgetKb, int rollup100msKb, int rollup1sKb) {
+        int numeric = 0;
+        int[] columns = new int[catalog.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = isNumeric(catalog.get(i)) ? numeric++ : -1;
+        }
+        int tierCount = (rollup100msKb != 0 ? 1 : 0) + (rollup1sKb != 0 ? 1 : 0);
+        this.tiers = new RollupTier[tierCount];
+        int t = 0;
+        if (rollup100msKb != 0) {
+            int buckets =
+                    rollupBuckets(numeric, 100_000L, rollup100msKb, DEFAULT_ROLLUP_100MS_SECONDS);
+            tiers[t++] = new RollupTier(columns, numeric, 100_000L, buckets);
+        }
+        if (rollup1sKb != 0) {
+            int buckets =
+                    rollupBuckets(numeric, 1_000_000L, rollup1sKb, DEFAULT_ROLLUP_1S_SECONDS);
+            tiers[t] = new RollupTier(columns, numeric, 1_000_000L, buckets);
+        }
+        // Split the budget evenly; every field keeps at least two blocks.
+        long budgetBlocks = (long) budgetKb * 1024 / BLOCK_BYTES;
+        int blocksPerField = (int) Math.max(2, budgetBlocks / Math.max(1, numeric));
+        this.fields = new FieldHistory[catalog.size()];
+        for (int i = 0; i < fields.length; i++) {
+            if (isNumeric(catalog.get(i))) {
+                fields[i] = new FieldHistory(blocksPerField);
+            }
+        }
+        this.free = new GorillaBlock[Math.max(1, numeric)];
+    }
+
+    /**
+     * Record the numeric values of one published snapshot (single writer).
+     */
+    public void record(TelemetrySnapshot snapshot) {
+        long timestampUs = snapshot.timestampUs();
+        for (RollupTier tier : tiers) {
+            tier.advance(timestampUs);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            FieldHistory history = fields[i];
+            if (history == null) {
+                continue;
+            }
+            // Empty slots (nothing put this loop) are simply not recorded.
+            double value;
+            switch (snapshot.kind(i)) {
+                case TelemetrySnapshot.KIND_DOUBLE:
+                    value = snapshot.getDouble(i);
+                    break;
+                case TelemetrySnapshot.KIND_LONG:
+                    // Exact for counters and timestamps up to 2^53.
+                    value = (double) snapshot.getLong(i);
+                    break;
+                default:
+                    continue;
+            }
+            history.append(this, timestampUs, value);
+            for (RollupTier tier : tiers) {
+                tier.add(i, value);
+            }
+        }
+    }
+
+    /**
+     * True when this field index has a history (numeric fields only).
+     */
+    public boolean hasField(int field) {
+        return field >= 0 && field < fields.length && fields[field] != null;
+    }
+
+    /**
+     * Read one field's samples at or after fromUs, oldest first. Close the cursor when done.
+     */
+    public Cursor read(int field, long fromUs) {
+        if (!hasField(field)) {
+            throw new IllegalArgumentException("No history for field index " + field);
+        }
+        return fields[field].cursor(fromUs, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * One field's history between fromUs and toUs (inclusive) at about resolutionUs.
+     *
+     * The coarsest tier whose buckets are no wider than resolutionUs is used, and its
+     * buckets are merged into resolutionUs-wide points. Resolution 0 returns every raw
+     * sample. Rollup buckets still being filled are not included.
+     */
+    public HistoryRange query(int field, long fromUs, long toUs, long resolutionUs) {
+        return query(field, fromUs, toUs, resolutionUs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as query(field, fromUs, toUs, resolutionUs), but only the newest maxPoints points.
+     *
+     * Raw blocks older than the newest maxPoints samples are skipped without decoding, so
+     * the cost stays bounded however long the range is.
+     */
+    public HistoryRange query(
+            int field, long fromUs, long toUs, long resolutionUs, int maxPoints) {
+        if (!hasField(field)) {
+            throw new IllegalArgumentException("No history for field index " + field);
+        }
+        RollupTier source = null;
+        for (RollupTier tier : tiers) {
+            if (tier.resolutionUs() <= resolutionUs) {
+                source = tier;
+            }
+        }
+        HistoryRange range =
+                new HistoryRange(resolutionUs, source == null ? 0 : source.resolutionUs());
+        if (source != null) {
+            source.read(field, fromUs, toUs, range);
+            range.keepNewest(maxPoints);
+            return range;
+        }
+        // Finer than every rollup: decode the raw samples (only the newest blocks).
+        try (Cursor cursor = fields[field].cursor(fromUs, toUs, maxPoints)) {
+            while (cursor.next() && cursor.timestampUs() <= toUs) {
+                double value = cursor.value();
+                range.add(cursor.timestampUs(), value, value, value, 1);
+            }
+        }
+        range.keepNewest(maxPoints);
+        return range;
+    }
+
+    /**
+     * Compressed bytes currently held across all fields (approximate while recording).
+     */
+    public long usedBytes() {
+        long total = 0;
+        for (FieldHistory history : fields) {
+            if (history != null) {
+                total += history.usedBytes();
+            }
+        }
+        return total;
+    }
+
+    private static int rollupBuckets(
+            int width, long resolutionUs, int budgetKb, int retentionSeconds) {
+        if (budgetKb < 0) {
+            // One closed bucket per resolution step of the retention.
+            return (int) (retentionSeconds * 1_000_000L / resolutionUs);
+        }
+        return RollupTier.bucketsFor(width, budgetKb);
+    }
+
+    static boolean isNumeric(SchemaField field) {
+        return "double".equals(field.type) || "long".equals(field.type);
+    }
+
+    GorillaBlock acquireBlock() {
+        GorillaBlock block = null;
+        synchronized (this) {
+            if (freeCount > 0) {
+                block = free[--freeCount];
+                free[freeCount] = null;
+            }
+        }
+        if (block == null) {
+            // Still filling the budget (or a reader holds old blocks): add one.
+            block = new GorillaBlock(this);
+        }
+        block.reset();
+        return block;
+    }
+
+    void recycle(GorillaBlock block) {
+        synchronized (this) {
+            if (freeCount < free.length) {
+                free[freeCount++] = block;
+            }
+        }
+    }
+
+    /**
+     * Forward-only reader over one field's history.
+     */
+    public static final class Cursor implements AutoCloseable {
+        private final GorillaBlock[] blocks;
+        private final int[] counts;
+        private final long fromUs;
+        private final GorillaBlock.Decoder decoder = new GorillaBlock.Decoder();
+        private int blockIndex = -1;
+        private boolean closed;
+
+        Cursor(GorillaBlock[] blocks, int[] counts, long fromUs) {
+            this.blocks = blocks;
+            this.counts = counts;
+            this.fromUs = fromUs;
+        }
+
+        /**
+         * Advance to the next sample; false at the end.
+         */
+        public boolean next() {
+            while (!closed) {
+                if (blockIndex >= 0 && decoder.next()) {
+                    if (decoder.timestampUs() >= fromUs) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (++blockIndex >= blocks.length) {
+                    return false;
+                }
+                decoder.reset(blocks[blockIndex], counts[blockIndex]);
+            }
+            return false;
+        }
+
+        /**
+         * Robot time of the current sample (microseconds since server start).
+         */
+        public long timestampUs() {
+            return decoder.timestampUs();
+        }
+
+        /**
+         * Value of the current sample.
+         */
+        public double value() {
+            return decoder.value();
+        }
+
+        /**
+         * Release the blocks this cursor was holding.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (GorillaBlock block : blocks) {
+                block.release();
+            }
+        }
+    }
+
+    private static final class FieldHistory {
+        // Ring of blocks, oldest at first; the newest one is being appended to.
+        private final GorillaBlock[] blocks;
+        private int first;
+        private int size;
+        private GorillaBlock current;
+
+        FieldHistory(int maxBlocks) {
+            this.blocks = new GorillaBlock[maxBlocks];
+        }
+
+        void append(TelemetryHistory owner, long timestampUs, double value) {
+            if (current != null && current.append(timestampUs, value)) {
+                return;
+            }
+            // Block full: start a new one, recording over the oldest when at the budget.
+            GorillaBlock block = owner.acquireBlock();
+            block.append(timestampUs, value);
+            GorillaBlock evicted = null;
+            synchronized (this) {
+                if (size == blocks.length) {
+                    evicted = blocks[first];
+                    blocks[first] = null;
+                    first = (first + 1) % blocks.length;
+                    size--;
+                }
+                blocks[(first + size) % blocks.length] = block;
+                size++;
+                current = block;
+            }
+            if (evicted != null) {
+                evicted.release();
+            }
+        }
+
+        Cursor cursor(long fromUs, long toUs, int maxSamples) {
+            /*
+             * Retain every block that may hold one of the newest maxSamples samples between
+             * fromUs and toUs, and remember how many samples each had right now; later
+             * appends are not part of this read.
+             */
+            synchronized (this) {
+                if (size == 0) {
+                    // Nothing recorded for this field yet.
+                    return new Cursor(new GorillaBlock[0], new int[0], fromUs);
+                }
+                // Whole blocks that ended before fromUs are skipped without decoding.
+                int skip = 0;
+                while (skip < size - 1 && block(skip).lastTimestampUs() < fromUs) {
+                    skip++;
+                }
+                // So are blocks that start after toUs.
+                int end = size;
+                while (end > skip + 1 && block(end - 1).firstTimestampUs() > toUs) {
+                    end--;
+                }
+                // Walk back from the last block until the blocks before it hold maxSamples.
+                int start = end - 1;
+                long older = 0;
+                while (start > skip && older < maxSamples) {
+                    start--;
+                    older += block(start).count();
+                }
+                int count = end - start;
+                GorillaBlock[] held = new GorillaBlock[count];
+                int[] counts = new int[count];
+                for (int i = 0; i < count; i++) {
+                    GorillaBlock block = block(start + i);
+                    block.retain();
+                    held[i] = block;
+                    counts[i] = block.count();
+                }
+                return new Cursor(held, counts, fromUs);
+            }
+        }
+
+        private GorillaBlock block(int index) {
+            // index counts from the oldest block; callers hold this lock.
+            return blocks[(first + index) % blocks.length];
+        }
+
+        synchronized long usedBytes() {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total += blocks[(first + i) % blocks.length].usedBytes();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * telelib's own overhead: how long publish() takes on the loop thread, how long frames
+ * take to encode, and how much each client is sent, dropped and left waiting.
+ *
+ * Histograms have one writer each (publish: loop thread; dispatch: TelemetryPublish
+ * thread; encode and SET: IO thread).
+ * Totals are LongAdders, so any thread may add without contention. Reported by the
+ * STATS command and, with "self_stats": true in the schema, as _telelib.* fields.
+ */
+final class TelemetryMetrics {
+    /** Duration of SchemaTelemetryService.publish() (loop thread). */
+    final LatencyHistogram publish = new LatencyHistogram();
+    /** Publish-thread work for one queued snapshot (async_publish only). */
+    final LatencyHistogram dispatch = new LatencyHistogram();
+    /** Time to encode one outgoing frame (IO thread). */
+    final LatencyHistogram encode = new LatencyHistogram();
+    /** Time to apply one SET command (IO thread). */
+    final LatencyHistogram set = new LatencyHistogram();
+    /** Bytes written to client sockets. */
+    final LongAdder bytesSent = new LongAdder();
+    /** Frames queued for clients. */
+    final LongAdder framesSent = new LongAdder();
+    /** Frames skipped because a client was over its high-water mark. */
+    final LongAdder framesDropped = new LongAdder();
+    /** Published snapshots a client never saw because a newer one replaced them. */
+    final LongAdder framesCoalesced = new LongAdder();
+    /** Loop snapshots dropped because the async publish queue was full. */
+    final LongAdder publishDropped = new LongAdder();
+    /** Datagrams handed to the UDP socket (one per target per frame). */
+    final LongAdder udpDatagrams = new LongAdder();
+    /** Bytes sent as UDP datagrams. */
+    final LongAdder udpBytes = new LongAdder();
+    /** Datagrams not sent: socket buffer full, network error, or frame too big. */
+    final LongAdder udpDropped = new LongAdder();
+
+    /**
+     * Full STATS reply: histograms, totals, UDP, then one line per session, then OK.
+     */
+    String describe(List<SessionStats> sessions) {
+        StringBuilder out = new StringBuilder(256 + sessions.size() * 160);
+        out.append("STATS publish ");
+        publish.appendTo(out);
+        out.append("\nSTATS dispatch ");
+        dispatch.appendTo(out);
+        out.append("\nSTATS encode ");
+        encode.appendTo(out);
+        out.append("\nSTATS set ");
+        set.appendTo(out);
+        out.append("\nSTATS total clients=")
+                .append(sessions.size())
+                .append(" bytes=")
+                .append(bytesSent.sum())
+                .append(" frames=")
+                .append(framesSent.sum())
+                .append(" dropped=")
+                .append(framesDropped.sum())
+                .append(" coalesced=")
+                .append(framesCoalesced.sum())
+                .append(" publish_dropped=")
+                .append(publishDropped.sum())
+                .append("\nSTATS udp datagrams=")
+                .append(udpDatagrams.sum())
+                .append(" bytes=")
+                .append(udpBytes.sum())
+                .append(" dropped=")
+                .append(udpDropped.sum())
+                .append('\n');
+        for (SessionStats session : sessions) {
+            out.append(
+                    String.format(
+                            Locale.US,
+                            "STATS session %s requested_hz=%.1f effective_hz=%.1f"
+                                    + " measured_hz=%.1f jitter_ms=%.2f"
+                                    + " frames=%d bytes=%d dropped=%d coalesced=%d"
+                                    + " queue=%d max_queue=%d shed=%s\n",
+                            session.remoteAddress,
+                            session.requestedHz,
+                            session.effectiveHz,
+                            session.measuredHz,
+                            session.jitterMs,
+                            session.sentFrames,
+                            session.bytesSent,
+                            session.droppedFrames,
+                            session.coalescedFrames,
+                            session.queuedBytes,
+                            session.maxQueuedBytes,
+                            FieldScheduler.shedClasses(session.shedLevel)));
+        }
+        out.append("OK\n");
+        return out.toString();
+    }
+}
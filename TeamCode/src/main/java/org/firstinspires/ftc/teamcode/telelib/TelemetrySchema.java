@@ -22,20 +22,66 @@ import org.json.JSONObject;
  * Think of it like a class roster: only names in the roster are allowed.
  */
 public class TelemetrySchema {
+    /** Default memory budget for the compressed on-robot history (0: history is opt-in). */
+    public static final int DEFAULT_HISTORY_KB = 0;
+    /** Default disk budget for flight recorder files (0: recording is opt-in). */
+    public static final int DEFAULT_RECORDER_MB = 0;
+
     private final int port;
     private final boolean strict;
     private final int maxRateHz;
+    private final int sampleBuffer;
+    private final int historyKb;
+    private final int rollup100msKb;
+    private final int rollup1sKb;
+    private final int recorderMb;
+    private final boolean selfStats;
+    private final boolean asyncPublish;
+    private final int udpPort;
+    private final String udpGroup;
+    private final int udpRateHz;
     private final List<SchemaField> fields;
     private final Map<String, Integer> indexByName;
+    private final FieldHandle[] handles;
 
-    private TelemetrySchema(int port, boolean strict, int maxRateHz, List<SchemaField> fields) {
+    /**
+     * Schema from already-parsed settings (generated TelemetryFields code, no JSON).
+     */
+    TelemetrySchema(
+            int port,
+            boolean strict,
+            int maxRateHz,
+            int sampleBuffer,
+            int historyKb,
+            int rollup100msKb,
+            int rollup1sKb,
+            int recorderMb,
+            boolean selfStats,
+            boolean asyncPublish,
+            int udpPort,
+            String udpGroup,
+            int udpRateHz,
+            List<SchemaField> fields) {
         this.port = port;
         this.strict = strict;
         this.maxRateHz = maxRateHz;
+        this.sampleBuffer = sampleBuffer;
+        this.historyKb = historyKb;
+        this.rollup100msKb = rollup100msKb;
+        this.rollup1sKb = rollup1sKb;
+        this.recorderMb = recorderMb;
+        this.selfStats = selfStats;
+        this.asyncPublish = asyncPublish;
+        this.udpPort = udpPort;
+        this.udpGroup = udpGroup;
+        this.udpRateHz = udpRateHz;
         this.fields = fields;
         this.indexByName = new HashMap<>();
+        this.handles = new FieldHandle[fields.size()];
         for (int i = 0; i < fields.size(); i++) {
-            indexByName.put(fields.get(i).name, i);
+            SchemaField field = fields.get(i);
+            indexByName.put(field.name, i);
+            handles[i] = new FieldHandle(field.name, field.type, i, field.format);
         }
     }
 
@@ -51,6 +97,36 @@ public class TelemetrySchema {
         if (maxRateHz <= 0) {
             maxRateHz = 100;
         }
+        int sampleBuffer = json.optInt("sample_buffer", TelemetryServer.DEFAULT_SAMPLE_BUFFER);
+        if (sampleBuffer <= 0) {
+            sampleBuffer = TelemetryServer.DEFAULT_SAMPLE_BUFFER;
+        }
+        // 0 turns the on-robot history off.
+        int historyKb = Math.max(0, json.optInt("history_kb", DEFAULT_HISTORY_KB));
+        // Budgets for the 100 ms and 1 s rollup tiers; 0 leaves that tier out, and without
+        // a budget each tier is sized for its default retention.
+        int rollup100msKb =
+                json.optInt("history_100ms_kb", TelemetryHistory.DEFAULT_ROLLUP_100MS_KB);
+        int rollup1sKb = json.optInt("history_1s_kb", TelemetryHistory.DEFAULT_ROLLUP_1S_KB);
+        if (rollup100msKb < 0) {
+            rollup100msKb = TelemetryHistory.AUTO_ROLLUP_KB;
+        }
+        if (rollup1sKb < 0) {
+            rollup1sKb = TelemetryHistory.AUTO_ROLLUP_KB;
+        }
+        // Disk budget for the flight recorder; 0 turns recording off.
+        int recorderMb = Math.max(0, json.optInt("recorder_mb", DEFAULT_RECORDER_MB));
+        // Publish telelib's own overhead as _telelib.* fields.
+        boolean selfStats = json.optBoolean("self_stats", false);
+        // Hand snapshots to a background thread instead of publishing on the loop thread.
+        boolean asyncPublish = json.optBoolean("async_publish", false);
+        // Optional UDP stream for several viewers; 0 (the default) leaves it off.
+        int udpPort = Math.max(0, json.optInt("udp_port", 0));
+        String udpGroup = json.optString("udp_group", "");
+        int udpRateHz = json.optInt("udp_rate_hz", UdpTransport.DEFAULT_RATE_HZ);
+        if (udpRateHz <= 0) {
+            udpRateHz = UdpTransport.DEFAULT_RATE_HZ;
+        }
         JSONArray fieldArray = json.optJSONArray("fields");
         if (fieldArray == null) {
             throw new IllegalArgumentException("Telemetry schema must include a fields array.");
@@ -61,14 +137,39 @@ public class TelemetrySchema {
             if (field == null) {
                 continue;
             }
-            // Each field is a name + type + unit.
+            String name = field.optString("name", "");
+            int priority = SchemaField.parsePriority(field.optString("priority", "normal"));
+            if (priority < 0) {
+                throw new IllegalArgumentException(
+                        "Telemetry field " + name + ": priority must be critical, normal or bulk");
+            }
+            // Each field is a name + type + unit (+ optional binary quantum, format and
+            // priority class with its rate cap).
             fields.add(
                     new SchemaField(
-                            field.optString("name", ""),
+                            name,
                             field.optString("type", "double"),
-                            field.optString("unit", "")));
+                            field.optString("unit", ""),
+                            field.optDouble("quantum", 0.0),
+                            field.optString("format", SchemaField.DEFAULT_FORMAT),
+                            priority,
+                            field.optDouble("max_rate_hz", 0.0)));
         }
-        return new TelemetrySchema(port, strict, maxRateHz, fields);
+        return new TelemetrySchema(
+                port,
+                strict,
+                maxRateHz,
+                sampleBuffer,
+                historyKb,
+                rollup100msKb,
+                rollup1sKb,
+                recorderMb,
+                selfStats,
+                asyncPublish,
+                udpPort,
+                udpGroup,
+                udpRateHz,
+                fields);
     }
 
     /**
@@ -94,6 +195,78 @@ public class TelemetrySchema {
         return maxRateHz;
     }
 
+    /**
+     * How many published snapshots the server keeps for lossless clients.
+     */
+    public int getSampleBuffer() {
+        return sampleBuffer;
+    }
+
+    /**
+     * Memory budget (KB) for the compressed field history; 0 means no history.
+     */
+    public int getHistoryKb() {
+        return historyKb;
+    }
+
+    /**
+     * Memory budget (KB) for the 100 ms rollup tier; 0 leaves the tier out and
+     * TelemetryHistory.AUTO_ROLLUP_KB sizes it for its default retention.
+     */
+    public int getRollup100msKb() {
+        return rollup100msKb;
+    }
+
+    /**
+     * Memory budget (KB) for the 1 s rollup tier; 0 leaves the tier out and
+     * TelemetryHistory.AUTO_ROLLUP_KB sizes it for its default retention.
+     */
+    public int getRollup1sKb() {
+        return rollup1sKb;
+    }
+
+    /**
+     * Disk budget (MB) for flight recorder files; 0 means no recording.
+     */
+    public int getRecorderMb() {
+        return recorderMb;
+    }
+
+    /**
+     * Whether telelib's own overhead is published as reserved _telelib.* fields.
+     */
+    public boolean isSelfStats() {
+        return selfStats;
+    }
+
+    /**
+     * Whether publish() only queues the snapshot for the TelemetryPublish thread.
+     */
+    public boolean isAsyncPublish() {
+        return asyncPublish;
+    }
+
+    /**
+     * UDP port that datagrams are sent to; 0 means no UDP stream.
+     */
+    public int getUdpPort() {
+        return udpPort;
+    }
+
+    /**
+     * Multicast or broadcast address for the UDP stream ("" = registered peers only).
+     */
+    public String getUdpGroup() {
+        return udpGroup;
+    }
+
+    /**
+     * Send rate of the UDP stream (Hz).
+     */
+    public int getUdpRateHz() {
+        return udpRateHz;
+    }
+
     /**
      * Ordered list of schema fields defined in the JSON file.
      */
@@ -110,6 +283,19 @@ public class TelemetrySchema {
         return indexByName.get(name);
     }
 
+    /**
+     * Resolve a field name once, for put(FieldHandle, ...) without per-call lookups.
+     *
+     * Throws IllegalArgumentException when the name is not in the schema.
+     */
+    public FieldHandle field(String name) {
+        Integer index = indexByName.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Telemetry field not in schema: " + name);
+        }
+        return handles[index];
+    }
+
     /**
      * Clean a string so it is safe to put in one CSV column.
      */
@@ -117,7 +303,8 @@ public class TelemetrySchema {
         if (value == null) {
             return "";
         }
-        return value.replace(",", ";").replace("\n", " ").replace("\r", " ");
+        // Character replaces return the same String when there is nothing to replace.
+        return value.replace(',', ';').replace('\n', ' ').replace('\r', ' ');
     }
 
     private static JSONObject loadConfig(HardwareMap hardwareMap, String pathOrJson) {
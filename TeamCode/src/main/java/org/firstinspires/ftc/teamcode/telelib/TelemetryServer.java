@@ -1,43 +1,110 @@
 package org.firstinspires.ftc.teamcode.telelib;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.Arrays;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Robot-hosted telemetry server with a tiny text protocol.
  *
  * Client -> Server:
  * HELLO
+ * HELLO binary=1          (switch this connection to binary frames, see README)
+ * HELLO seq=1             (DATA/DELTA lines carry "seq t_us"; replies SEQ run head)
  * SUB field1,field2 rate=20
  * SUB ALL rate=20
+ * SUB ALL rate=20 lossless=1
+ * SUB ALL rate=20 delta=1 (keyframes plus only the fields that changed)
+ * SUB motor_amps:max,yaw:mean rate=20 (min/max/mean of every sample per interval)
+ * RESUME seq              (resend retained snapshots after seq, GAP for lost ones)
  * LISTCFG
  * SET key=value
+ * HIST field1,field2 from=t_us to=t_us res=ms (backfill from the on-robot history)
+ * STATS                   (telelib's own timings, totals and per-client queues)
+ * UDP port                (also stream DATA datagrams to this client's address; UDP 0 stops)
  *
  * Server -> Client:
  * FIELDS name,type,unit;name,type,unit;...
  * CFG name,type,min,max;name,type,min,max;...
  * OK
  * DATA v1,v2,v3
+ * BATCH count             (lossless mode, followed by count SAMPLE lines)
+ * SAMPLE seq t_us v1,v2,v3
+ * GAP first last          (snapshots first..last are gone; RESUME and seq=1 only)
+ * DELTA bitmap v2         (delta mode, hex bitmap over the subscribed fields)
+ * HIST name tier_ms count (followed by count "t_us min,max,mean,n" lines, then OK)
+ * STATS kind key=value... (one line per histogram, total and session, then OK)
+ *
+ * All sockets are non-blocking and served by one selector thread, no matter how many
+ * clients connect. Each client has its own outbound buffer, so a slow laptop only
+ * loses its own frames instead of stalling everyone else. Likewise a RuntimeException
+ * while serving one client (a command handler, a config setter, an encoder) closes only
+ * that client; see setSessionFailureHandler. If the server cannot serve at all (the port
+ * is taken), setFailureHandler and failure() say why.
+ *
+ * The IO thread sleeps until the next client deadline (System.nanoTime, so 30 Hz really
+ * is 30 Hz) or until a new snapshot arrives for a client that is waiting for one. With no
+ * subscribers it blocks on the selector and uses no CPU.
+ *
+ * With enableUdp() the same IO thread also sends one UDP datagram per tick to a
+ * multicast/broadcast group and to peers registered with UDP (see UdpTransport).
  */
 public class TelemetryServer implements AutoCloseable {
+    /** Default number of published snapshots kept for lossless sessions. */
+    public static final int DEFAULT_SAMPLE_BUFFER = 256;
+    // How often to check write timeouts while bytes are queued.
+    private static final long WRITE_CHECK_MS = 500;
+    // How often getSessionStats() is refreshed.
+    private static final long STATS_REFRESH_NANOS = 1_000_000_000L;
+    // Kernel send buffer per client (the rest waits in the session's own queue).
+    private static final int SEND_BUFFER_BYTES = 32 * 1024;
     private final int port;
+    // Identifies this server run, so a client does not RESUME across a robot restart.
+    private final long runId = System.currentTimeMillis();
     private final FieldCatalog catalog;
     private final ConfigRegistry configRegistry;
-    private final int minIntervalMs;
-    private final CopyOnWriteArrayList<ClientSession> sessions = new CopyOnWriteArrayList<>();
+    private final long minIntervalNanos;
+    // Per-field fixed-point step for binary clients (0 = raw double).
+    private final double[] quanta;
+    // Full DATA frames encoded once per tick and shared by identical subscriptions.
+    private final FrameCache frameCache;
+    private final TelemetryMetrics metrics = new TelemetryMetrics();
+    // Recently published snapshots; the newest one is what regular sessions send.
+    private final SnapshotRing ring;
+    // Only touched by the IO thread.
+    private final List<ClientSession> sessions = new ArrayList<>();
+    // Scheduler state from the last broadcast pass (IO thread only).
+    private long nextDeadlineNanos;
+    private boolean anyWaiting;
+    private boolean anyPendingOutput;
+    private boolean sessionsChanged;
+    private long lastStatsNanos;
+    // Set while a due session waits for fresh data; setSnapshot wakes the IO thread.
+    private volatile boolean waitingForData;
+    private volatile List<SessionStats> sessionStats = Collections.emptyList();
+    private volatile CommandHandler commandHandler;
+    private volatile TelemetryHistory history;
+    // Optional UDP stream; set before start(), then IO thread only.
+    private volatile UdpTransport udp;
+    // Told (on the IO thread) why the UDP socket could not be opened.
+    private volatile Consumer<IOException> udpFailureHandler;
+    // Told (on the IO thread) why a client or the UDP stream was closed.
+    private volatile Consumer<RuntimeException> sessionFailureHandler;
+    // Told (on the IO thread) why the server itself stopped, e.g. the port was taken.
+    private volatile Consumer<IOException> failureHandler;
+    private volatile IOException failure;
     private volatile boolean running;
-    private volatile TelemetrySnapshot latestSnapshot;
-    private Thread acceptThread;
-    private Thread broadcastThread;
+    private volatile Selector selector;
+    private Thread ioThread;
 
     /**
      * Create a server without live-config support.
@@ -58,37 +125,130 @@ public class TelemetryServer implements AutoCloseable {
      */
     public TelemetryServer(
             int port, FieldCatalog catalog, ConfigRegistry configRegistry, int maxRateHz) {
+        this(port, catalog, configRegistry, maxRateHz, DEFAULT_SAMPLE_BUFFER);
+    }
+
+    /**
+     * Create a server that also keeps the last sampleBuffer snapshots for lossless clients.
+     */
+    public TelemetryServer(
+            int port,
+            FieldCatalog catalog,
+            ConfigRegistry configRegistry,
+            int maxRateHz,
+            int sampleBuffer) {
         // Save the port and the list of fields the client can request.
         this.port = port;
         this.catalog = catalog;
         this.configRegistry = configRegistry;
-        this.minIntervalMs = Math.max(1, 1000 / Math.max(1, maxRateHz));
-        this.latestSnapshot = TelemetrySnapshot.empty(catalog.size());
+        this.minIntervalNanos = 1_000_000_000L / Math.max(1, maxRateHz);
+        this.quanta = new double[catalog.size()];
+        for (int i = 0; i < quanta.length; i++) {
+            quanta[i] = catalog.get(i).quantum;
+        }
+        this.frameCache = new FrameCache(quanta);
+        this.ring = new SnapshotRing(sampleBuffer, catalog.size());
     }
 
     /**
-     * Start the accept and broadcast loops in background threads.
+     * Start the selector loop in a background thread.
      */
     public void start() {
         if (running) {
             return;
         }
-        // Start background threads for accepting clients and broadcasting data.
+        // One thread accepts clients, reads commands, and writes frames for everyone.
         running = true;
-        acceptThread = new Thread(this::runAcceptLoop, "TelemetryServerAccept");
-        acceptThread.setDaemon(true);
-        acceptThread.start();
-        broadcastThread = new Thread(this::runBroadcastLoop, "TelemetryServerBroadcast");
-        broadcastThread.setDaemon(true);
-        broadcastThread.start();
+        failure = null;
+        ioThread = new Thread(this::runSelectorLoop, "TelemetryServerIO");
+        ioThread.setDaemon(true);
+        ioThread.start();
     }
 
     /**
      * Update the latest telemetry snapshot; sent out on the next broadcast tick.
+     *
+     * The server takes over the caller's reference to the snapshot and stamps it with
+     * the next sequence number and the robot time. Call from one thread only.
      */
     public void setSnapshot(TelemetrySnapshot snapshot) {
-        // Update the latest data snapshot (called once per loop).
-        this.latestSnapshot = snapshot;
+        // Add the data snapshot to the ring (called once per loop).
+        ring.publish(snapshot);
+        wakeWaitingSessions();
+    }
+
+    /**
+     * Same as setSnapshot(snapshot), keeping the robot time from a recording.
+     */
+    void setSnapshot(TelemetrySnapshot snapshot, long timestampUs) {
+        ring.publish(snapshot, timestampUs);
+        wakeWaitingSessions();
+    }
+
+    /**
+     * Answer commands the server does not know itself (null to remove).
+     */
+    public void setCommandHandler(CommandHandler handler) {
+        this.commandHandler = handler;
+    }
+
+    /**
+     * Called on the IO thread (null to remove) with the RuntimeException that made the
+     * server close one client, or the UDP stream; everyone else keeps streaming.
+     */
+    public void setSessionFailureHandler(Consumer<RuntimeException> handler) {
+        this.sessionFailureHandler = handler;
+    }
+
+    /**
+     * Called on the IO thread (null to remove) with the IOException that stopped the whole
+     * server: the port could not be bound or the selector failed. No client is served after it.
+     */
+    public void setFailureHandler(Consumer<IOException> handler) {
+        this.failureHandler = handler;
+    }
+
+    /**
+     * Why the IO thread stopped serving clients, or null (running, or stopped by close()).
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * History that HIST requests are answered from (null: HIST replies ERR no-history).
+     */
+    public void setHistory(TelemetryHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Also stream every field as UDP datagrams at rateHz (capped by the max client rate)
+     * to udpPort on group (multicast or broadcast address, may be null) and on clients
+     * that send "UDP port". Call before start().
+     *
+     * Throws IllegalArgumentException when group is not a valid address.
+     */
+    public void enableUdp(int udpPort, String group, int rateHz) {
+        enableUdp(udpPort, group, rateHz, null);
+    }
+
+    /**
+     * Like enableUdp(udpPort, group, rateHz), and onFailure (may be null) is called on the IO
+     * thread if the UDP socket cannot be opened. TCP clients are served either way.
+     */
+    public void enableUdp(
+            int udpPort, String group, int rateHz, Consumer<IOException> onFailure) {
+        int cappedHz = (int) Math.min(rateHz, 1_000_000_000L / minIntervalNanos);
+        udp = new UdpTransport(runId, udpPort, group, cappedHz, catalog.size(), quanta, metrics);
+        udpFailureHandler = onFailure;
+    }
+
+    /**
+     * Requested and measured send rate of each connected client (refreshed about once a second).
+     */
+    public List<SessionStats> getSessionStats() {
+        return sessionStats;
     }
 
     /**
@@ -96,263 +256,316 @@ public class TelemetryServer implements AutoCloseable {
      */
     @Override
     public void close() {
-        // Stop the server and close all client connections.
+        // Stop the server; the IO thread closes the client connections on its way out.
         running = false;
-        for (ClientSession session : sessions) {
-            session.close();
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    long runId() {
+        return runId;
+    }
+
+    CommandHandler commandHandler() {
+        return commandHandler;
+    }
+
+    TelemetryHistory history() {
+        return history;
+    }
+
+    FieldCatalog catalog() {
+        return catalog;
+    }
+
+    ConfigRegistry configRegistry() {
+        return configRegistry;
+    }
+
+    SnapshotRing ring() {
+        return ring;
+    }
+
+    long minIntervalNanos() {
+        return minIntervalNanos;
+    }
+
+    double[] quanta() {
+        return quanta;
+    }
+
+    FrameCache frameCache() {
+        return frameCache;
+    }
+
+    TelemetryMetrics metrics() {
+        return metrics;
+    }
+
+    UdpTransport udp() {
+        return udp;
+    }
+
+    private void wakeWaitingSessions() {
+        if (waitingForData) {
+            // A client is due and only waiting for fresh data: send it now, not next tick.
+            waitingForData = false;
+            Selector current = selector;
+            if (current != null) {
+                current.wakeup();
+            }
         }
-        sessions.clear();
     }
 
-    private void runAcceptLoop() {
+    private void runSelectorLoop() {
         /*
-         * Accept incoming clients and create a session per connection.
-         * Each session handles commands and subscription rate.
+         * Accept clients, read their commands, flush their queued bytes, and push the
+         * latest snapshot to each session when it is due. Only select() waits.
          */
-        try (ServerSocket server = new ServerSocket()) {
-            server.setReuseAddress(true);
+        try (Selector sel = Selector.open();
+                ServerSocketChannel server = ServerSocketChannel.open()) {
+            selector = sel;
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
             server.bind(new InetSocketAddress("0.0.0.0", port));
+            server.configureBlocking(false);
+            server.register(sel, SelectionKey.OP_ACCEPT);
+            if (udp != null) {
+                try {
+                    udp.open();
+                } catch (IOException e) {
+                    // No UDP socket on this network: the stream stays off, TCP is unaffected.
+                    Consumer<IOException> handler = udpFailureHandler;
+                    if (handler != null) {
+                        handler.accept(e);
+                    }
+                }
+            }
             while (running) {
-                // Wait for a laptop to connect.
-                Socket client = server.accept();
-                ClientSession session = new ClientSession(client);
-                sessions.add(session);
-                session.start();
+                long now = System.nanoTime();
+                long head = broadcast(now);
+                refreshStats(now);
+                long timeoutMs = selectTimeoutMs(now);
+                if (anyWaiting) {
+                    waitingForData = true;
+                    if (ring.head() != head) {
+                        // Published while we were busy; no need to wait for the wakeup.
+                        timeoutMs = -1;
+                    }
+                }
+                if (timeoutMs < 0) {
+                    sel.selectNow();
+                } else {
+                    sel.select(timeoutMs);
+                }
+                waitingForData = false;
+                handleReadyKeys(sel, server);
+            }
+        } catch (IOException e) {
+            // Usually the port is already in use; close() makes select() return, not throw.
+            if (running) {
+                failure = e;
+                Consumer<IOException> handler = failureHandler;
+                if (handler != null) {
+                    handler.accept(e);
+                }
             }
-        } catch (IOException ignored) {
         } finally {
             running = false;
+            for (ClientSession session : sessions) {
+                session.close();
+            }
+            sessions.clear();
+            if (udp != null) {
+                udp.close();
+            }
+            sessionStats = Collections.emptyList();
+            frameCache.clear();
+            ring.clear();
+            selector = null;
         }
     }
 
-    private void runBroadcastLoop() {
-        /*
-         * Push the latest snapshot to each session at its configured rate.
-         */
-        while (running) {
-            long now = System.currentTimeMillis();
-            TelemetrySnapshot snapshot = latestSnapshot;
-            for (ClientSession session : sessions) {
-                session.maybeSend(snapshot, now);
+    private void handleReadyKeys(Selector sel, ServerSocketChannel server) throws IOException {
+        Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
             }
+            if (key.isAcceptable()) {
+                accept(sel, server);
+                continue;
+            }
+            ClientSession session = (ClientSession) key.attachment();
             try {
-                Thread.sleep(5);
-            } catch (InterruptedException ignored) {
+                if (key.isReadable()) {
+                    session.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    session.onWritable();
+                }
+            } catch (RuntimeException e) {
+                // One client's command failed: drop that client, keep the IO thread.
+                sessionFailed(session, e);
             }
         }
     }
 
-    private class ClientSession implements AutoCloseable {
-        private final Socket socket;
-        private final BufferedReader reader;
-        private final BufferedWriter writer;
-        private volatile int[] fields = new int[0];
-        private volatile long intervalMs = 50;
-        private long lastSentMs = 0;
-        private Thread readThread;
-
-        ClientSession(Socket socket) throws IOException {
-            this.socket = socket;
-            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-            socket.setTcpNoDelay(true);
-        }
+    private void sessionFailed(ClientSession session, RuntimeException e) {
+        // The next broadcast pass removes the closed session from the list.
+        session.close();
+        reportFailure(e);
+    }
 
-        void start() {
-            // Start a thread that reads commands from this client.
-            readThread = new Thread(this::readLoop, "TelemetryServerClient");
-            readThread.setDaemon(true);
-            readThread.start();
+    private void reportFailure(RuntimeException e) {
+        Consumer<RuntimeException> handler = sessionFailureHandler;
+        if (handler != null) {
+            handler.accept(e);
         }
+    }
 
-        void maybeSend(TelemetrySnapshot snapshot, long nowMs) {
-            if (fields.length == 0) {
-                return;
-            }
-            if (nowMs - lastSentMs < intervalMs) {
-                return;
-            }
-            // Send one CSV line with only the fields this client requested.
-            String line = snapshot.toCsv(fields);
+    private void accept(Selector sel, ServerSocketChannel server) throws IOException {
+        // Accept every laptop that is waiting to connect.
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
             try {
-                writer.write("DATA ");
-                writer.write(line);
-                writer.write('\n');
-                writer.flush();
-                lastSentMs = nowMs;
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                // Let the OS notice peers that vanished without closing the socket.
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                /*
+                 * A small kernel send buffer makes a slow link back up in the session
+                 * queue, where rate control and shedding see it, instead of hiding
+                 * seconds of stale frames in the kernel.
+                 */
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_BYTES);
+                ClientSession session = new ClientSession(this, channel);
+                session.attach(channel.register(sel, SelectionKey.OP_READ, session));
+                sessions.add(session);
+                sessionsChanged = true;
             } catch (IOException ignored) {
-                close();
+                channel.close();
             }
         }
+    }
 
-        private void readLoop() {
-            /*
-             * Read client commands until disconnect.
-             */
-            try {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    handleCommand(line.trim());
+    private long broadcast(long nowNanos) {
+        /*
+         * Send to every session (and the UDP stream) that is due and has a snapshot it
+         * has not seen yet, drop sessions that closed or stopped draining their socket,
+         * and note the earliest upcoming deadline. Returns the ring head that was checked.
+         */
+        nextDeadlineNanos = Long.MAX_VALUE;
+        anyWaiting = false;
+        anyPendingOutput = false;
+        long head = ring.head();
+        TelemetrySnapshot snapshot = null;
+        try {
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                ClientSession session = sessions.get(i);
+                try {
+                    if (session.isOpen() && session.isDue(nowNanos)) {
+                        if (!session.hasNewData(head)) {
+                            // Due, but nothing new yet: the next publish wakes us up.
+                            anyWaiting = true;
+                        } else {
+                            if (snapshot == null) {
+                                // Hold a reference so the loop thread cannot recycle it.
+                                snapshot = ring.acquireLatest();
+                            }
+                            if (snapshot != null) {
+                                session.send(snapshot, nowNanos);
+                            }
+                        }
+                    }
+                    if (session.isOpen()) {
+                        session.checkWriteTimeout(nowNanos);
+                    }
+                } catch (RuntimeException e) {
+                    sessionFailed(session, e);
                 }
-            } catch (IOException ignored) {
-            } finally {
-                close();
-            }
-        }
-
-        private void handleCommand(String line) throws IOException {
-            if (line.isEmpty()) {
-                return;
-            }
-            if (line.equalsIgnoreCase("HELLO") || line.equalsIgnoreCase("FIELDS")) {
-                // Send the list of all available fields.
-                sendFields();
-                return;
-            }
-            if (line.equalsIgnoreCase("LISTCFG")) {
-                sendConfig();
-                return;
-            }
-            if (line.toUpperCase().startsWith("SET")) {
-                handleSet(line.substring(3).trim());
-                return;
-            }
-            if (line.toUpperCase().startsWith("SUB")) {
-                // Client wants to subscribe to specific fields.
-                parseSub(line.substring(3).trim());
-                writer.write("OK\n");
-                writer.flush();
-                return;
-            }
-            writer.write("ERR unknown\n");
-            writer.flush();
-        }
-
-        private void sendFields() throws IOException {
-            /*
-             * Send the full field catalog as a single FIELDS line.
-             */
-            // Format "name,type,unit" for each field.
-            List<SchemaField> defs = catalog.getFields();
-            StringBuilder out = new StringBuilder(defs.size() * 20);
-            out.append("FIELDS ");
-            for (int i = 0; i < defs.size(); i++) {
-                if (i > 0) {
-                    out.append(';');
+                if (!session.isOpen()) {
+                    sessions.remove(i);
+                    sessionsChanged = true;
+                    continue;
                 }
-                SchemaField def = defs.get(i);
-                out.append(def.name)
-                        .append(',')
-                        .append(def.type)
-                        .append(',')
-                        .append(def.unit == null ? "" : def.unit);
-            }
-            out.append('\n');
-            writer.write(out.toString());
-            writer.flush();
-        }
-
-        private void sendConfig() throws IOException {
-            /*
-             * Send live-config entries (CFG line) or an empty list.
-             */
-            if (configRegistry == null) {
-                writer.write("CFG \n");
-                writer.flush();
-                return;
-            }
-            List<ConfigRegistry.ConfigEntry> entries = configRegistry.list();
-            StringBuilder out = new StringBuilder(entries.size() * 24);
-            out.append("CFG ");
-            for (int i = 0; i < entries.size(); i++) {
-                if (i > 0) {
-                    out.append(';');
+                if (session.isSubscribed() && !session.isDue(nowNanos)) {
+                    nextDeadlineNanos = Math.min(nextDeadlineNanos, session.nextDueNanos());
+                }
+                if (session.hasPendingOutput()) {
+                    anyPendingOutput = true;
                 }
-                ConfigRegistry.ConfigEntry entry = entries.get(i);
-                out.append(entry.getName())
-                        .append(',')
-                        .append(entry.getType())
-                        .append(',')
-                        .append(entry.getMin())
-                        .append(',')
-                        .append(entry.getMax());
-            }
-            out.append('\n');
-            writer.write(out.toString());
-            writer.flush();
-        }
-
-        private void handleSet(String args) throws IOException {
-            /*
-             * Apply SET name=value to the ConfigRegistry.
-             */
-            if (configRegistry == null) {
-                writer.write("ERR no-config\n");
-                writer.flush();
-                return;
-            }
-            String[] parts = args.split("=", 2);
-            if (parts.length != 2) {
-                writer.write("ERR bad-format\n");
-                writer.flush();
-                return;
             }
-            String name = parts[0].trim();
-            String value = parts[1].trim();
-            boolean ok = configRegistry.set(name, value);
-            writer.write(ok ? "OK\n" : "ERR invalid\n");
-            writer.flush();
-        }
-
-        private void parseSub(String args) {
-            // Parse the field list and optional rate=... setting.
-            String[] parts = args.split("\\s+");
-            String fieldList = parts.length > 0 ? parts[0] : "";
-            int rate = 20;
-            for (int i = 1; i < parts.length; i++) {
-                String part = parts[i];
-                if (part.startsWith("rate=")) {
-                    try {
-                        rate = Integer.parseInt(part.substring(5));
-                    } catch (NumberFormatException ignored) {
+            UdpTransport stream = udp;
+            if (stream != null && stream.isActive()) {
+                // One encode for every UDP viewer, on its own schedule.
+                if (stream.isDue(nowNanos)) {
+                    if (!stream.hasNewData(head)) {
+                        anyWaiting = true;
+                    } else {
+                        if (snapshot == null) {
+                            snapshot = ring.acquireLatest();
+                        }
+                        if (snapshot != null) {
+                            try {
+                                stream.send(snapshot, nowNanos);
+                            } catch (RuntimeException e) {
+                                // Stop the UDP stream only; TCP clients are unaffected.
+                                stream.close();
+                                reportFailure(e);
+                            }
+                        }
                     }
                 }
+                if (stream.isActive() && !stream.isDue(nowNanos)) {
+                    nextDeadlineNanos = Math.min(nextDeadlineNanos, stream.nextDueNanos());
+                }
             }
-            if (rate <= 0) {
-                rate = 20;
+        } finally {
+            if (snapshot != null) {
+                snapshot.release();
             }
-            intervalMs = Math.max(minIntervalMs, 1000 / rate);
+        }
+        return head;
+    }
 
-            if (fieldList.equalsIgnoreCase("ALL") || fieldList.equals("*")) {
-                // "ALL" means every field in the catalog.
-                int[] all = new int[catalog.size()];
-                for (int i = 0; i < all.length; i++) {
-                    all[i] = i;
-                }
-                fields = all;
-                return;
-            }
+    private long selectTimeoutMs(long nowNanos) {
+        /*
+         * How long select() may sleep: until the earliest session deadline (rounded up),
+         * capped while bytes are queued so write timeouts are noticed. 0 means no limit.
+         */
+        long timeoutMs = 0;
+        if (nextDeadlineNanos != Long.MAX_VALUE) {
+            long waitNanos = nextDeadlineNanos - nowNanos;
+            timeoutMs = Math.max(1, (waitNanos + 999_999L) / 1_000_000L);
+        }
+        if (anyPendingOutput) {
+            timeoutMs = timeoutMs == 0 ? WRITE_CHECK_MS : Math.min(timeoutMs, WRITE_CHECK_MS);
+        }
+        return timeoutMs;
+    }
 
-            String[] names = fieldList.split(",");
-            int[] idx = new int[names.length];
-            int count = 0;
-            for (String name : names) {
-                // Ignore unknown field names.
-                Integer index = catalog.indexOf(name.trim());
-                if (index != null) {
-                    idx[count++] = index;
-                }
-            }
-            fields = Arrays.copyOf(idx, count);
+    private void refreshStats(long nowNanos) {
+        // Copy per-session numbers for other threads; sessions themselves are IO-thread only.
+        if (!sessionsChanged && nowNanos - lastStatsNanos < STATS_REFRESH_NANOS) {
+            return;
         }
+        sessionStats = Collections.unmodifiableList(collectSessionStats());
+        sessionsChanged = false;
+        lastStatsNanos = nowNanos;
+    }
 
-        @Override
-        public void close() {
-            try {
-                socket.close();
-            } catch (IOException ignored) {
-            }
-            sessions.remove(this);
+    /**
+     * Fresh stats for every session (IO thread only).
+     */
+    List<SessionStats> collectSessionStats() {
+        List<SessionStats> stats = new ArrayList<>(sessions.size());
+        for (ClientSession session : sessions) {
+            stats.add(session.stats());
         }
+        return stats;
     }
 }
@@ -1,29 +1,139 @@
 package org.firstinspires.ftc.teamcode.telelib;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * One immutable snapshot of telemetry values for a single loop.
  *
  * Imagine taking a photo of all your data at one moment.
+ *
+ * Values are kept in typed columns (double, long, string) and only turned into
+ * text when a client actually asks for a frame. The column is picked by the put(...)
+ * overload used, not by the schema type, so a "double" field put as a long keeps its
+ * integer text exactly as before.
+ *
+ * Snapshots from SchemaTelemetryService are pooled and reference counted:
+ * retain() before reading one on another thread, release() when done.
  */
 public class TelemetrySnapshot {
-    private final String[] values;
+    /** Slot has no value (renders as an empty CSV column). */
+    public static final byte KIND_EMPTY = 0;
+    /** Slot holds a double plus the format used to render it. */
+    public static final byte KIND_DOUBLE = 1;
+    /** Slot holds a long (timestamps, counters). */
+    public static final byte KIND_LONG = 2;
+    /** Slot holds a string value. */
+    public static final byte KIND_STRING = 3;
+
+    // Columns are package-private so TelemetrySnapshotBuilder can fill pooled buffers.
+    final byte[] kinds;
+    final double[] doubles;
+    final long[] longs;
+    final String[] strings;
+    final NumericFormat[] formats;
+    private final SnapshotPool pool;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    // Set once when the server publishes this snapshot.
+    private long sequence;
+    private long timestampUs;
 
     /**
      * Create a snapshot with the given ordered value list.
      */
     public TelemetrySnapshot(String[] values) {
-        // Store the values exactly as they are.
-        this.values = values;
+        // Store the values exactly as they are, all in the string column.
+        this(
+                new byte[values.length],
+                new double[values.length],
+                new long[values.length],
+                values,
+                new NumericFormat[values.length],
+                null);
+        for (int i = 0; i < values.length; i++) {
+            kinds[i] = values[i] == null ? KIND_EMPTY : KIND_STRING;
+        }
+    }
+
+    TelemetrySnapshot(SnapshotPool pool, int fieldCount) {
+        // Pooled buffer: columns are reused loop after loop.
+        this(
+                new byte[fieldCount],
+                new double[fieldCount],
+                new long[fieldCount],
+                new String[fieldCount],
+                new NumericFormat[fieldCount],
+                pool);
+    }
+
+    private TelemetrySnapshot(
+            byte[] kinds,
+            double[] doubles,
+            long[] longs,
+            String[] strings,
+            NumericFormat[] formats,
+            SnapshotPool pool) {
+        this.kinds = kinds;
+        this.doubles = doubles;
+        this.longs = longs;
+        this.strings = strings;
+        this.formats = formats;
+        this.pool = pool;
     }
 
     /**
-     * Get a single value by its field index.
+     * Get a single value by its field index, rendered as text.
      */
     public String get(int index) {
-        // Read one value by index.
-        return values[index];
+        // Strings are returned as-is; numbers are formatted on demand.
+        if (kinds[index] == KIND_STRING) {
+            return strings[index];
+        }
+        StringBuilder out = new StringBuilder(16);
+        appendValue(index, out);
+        return out.toString();
+    }
+
+    /**
+     * Which column holds the value at this index (one of the KIND_* constants).
+     */
+    public byte kind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * Raw double value (only meaningful when kind(index) is KIND_DOUBLE).
+     */
+    public double getDouble(int index) {
+        return doubles[index];
+    }
+
+    /**
+     * Raw long value (only meaningful when kind(index) is KIND_LONG).
+     */
+    public long getLong(int index) {
+        return longs[index];
+    }
+
+    /**
+     * Compiled format for a double value (only meaningful when kind(index) is KIND_DOUBLE).
+     */
+    public NumericFormat getFormat(int index) {
+        return formats[index];
+    }
+
+    /**
+     * Publish sequence number (1, 2, 3, ...; 0 for the initial blank snapshot).
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Robot monotonic time (microseconds since server start) when this was published.
+     */
+    public long timestampUs() {
+        return timestampUs;
     }
 
     /**
@@ -31,7 +141,26 @@ public class TelemetrySnapshot {
      */
     public int size() {
         // Number of values in this snapshot.
-        return values.length;
+        return kinds.length;
+    }
+
+    /**
+     * Append the text form of one value to the given builder.
+     */
+    public void appendValue(int index, StringBuilder out) {
+        switch (kinds[index]) {
+            case KIND_DOUBLE:
+                formats[index].appendTo(doubles[index], out);
+                break;
+            case KIND_LONG:
+                out.append(longs[index]);
+                break;
+            case KIND_STRING:
+                out.append(strings[index]);
+                break;
+            default:
+                break;
+        }
     }
 
     /**
@@ -40,15 +169,65 @@ public class TelemetrySnapshot {
     public String toCsv(int[] fieldIndexes) {
         // Build a CSV line in the order requested by the client.
         StringBuilder line = new StringBuilder(fieldIndexes.length * 8);
+        appendCsv(fieldIndexes, line);
+        return line.toString();
+    }
+
+    /**
+     * Append a CSV line for the requested field indexes to the given builder.
+     *
+     * An index of -1 (a field held back from this frame) leaves its column empty, the
+     * same as an empty slot or empty string; the text protocol does not tell them apart.
+     */
+    public void appendCsv(int[] fieldIndexes, StringBuilder line) {
         for (int i = 0; i < fieldIndexes.length; i++) {
             if (i > 0) {
                 line.append(',');
             }
-            int idx = fieldIndexes[i];
-            String value = values[idx];
-            line.append(value == null ? "" : value);
+            if (fieldIndexes[i] >= 0) {
+                appendValue(fieldIndexes[i], line);
+            }
+        }
+    }
+
+    /**
+     * Append "seq t_us " (the sequence and robot time stamped at publish).
+     */
+    void appendStamp(StringBuilder line) {
+        line.append(sequence).append(' ').append(timestampUs).append(' ');
+    }
+
+    /**
+     * True when this slot holds the same value (and renders the same) as in the other snapshot.
+     */
+    boolean sameValue(int index, TelemetrySnapshot other) {
+        if (kinds[index] != other.kinds[index]) {
+            return false;
+        }
+        switch (kinds[index]) {
+            case KIND_DOUBLE:
+                // Bit-exact, and the same format, so the rendered text cannot differ either.
+                return Double.doubleToLongBits(doubles[index])
+                                == Double.doubleToLongBits(other.doubles[index])
+                        && formats[index] == other.formats[index];
+            case KIND_LONG:
+                return longs[index] == other.longs[index];
+            case KIND_STRING:
+                return strings[index].equals(other.strings[index]);
+            default:
+                return true;
         }
-        return line.toString();
+    }
+
+    /**
+     * Copy one slot from another snapshot (used for unpooled per-session copies only).
+     */
+    void copyValue(int index, TelemetrySnapshot from) {
+        kinds[index] = from.kinds[index];
+        doubles[index] = from.doubles[index];
+        longs[index] = from.longs[index];
+        strings[index] = from.strings[index];
+        formats[index] = from.formats[index];
     }
 
     /**
@@ -56,8 +235,57 @@ public class TelemetrySnapshot {
      */
     public static TelemetrySnapshot empty(int fieldCount) {
         // Create an "empty" snapshot (all values blank).
-        String[] vals = new String[fieldCount];
-        Arrays.fill(vals, "");
-        return new TelemetrySnapshot(vals);
+        return new TelemetrySnapshot(
+                new byte[fieldCount],
+                new double[fieldCount],
+                new long[fieldCount],
+                new String[fieldCount],
+                new NumericFormat[fieldCount],
+                null);
+    }
+
+    /**
+     * Add a reference (caller must already own one).
+     */
+    void retain() {
+        refs.incrementAndGet();
+    }
+
+    /**
+     * Add a reference unless the buffer was already released back to the pool.
+     */
+    boolean tryRetain() {
+        while (true) {
+            int current = refs.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop a reference; the last one hands the buffer back to its pool.
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0 && pool != null) {
+            pool.recycle(this);
+        }
+    }
+
+    void stamp(long sequence, long timestampUs) {
+        this.sequence = sequence;
+        this.timestampUs = timestampUs;
+    }
+
+    void reset() {
+        // Every loop starts blank. Formats stay so the builder can reuse compiled ones.
+        Arrays.fill(kinds, KIND_EMPTY);
+        Arrays.fill(strings, null);
+        sequence = -1;
+        timestampUs = 0;
+        refs.set(1);
     }
 }
@@ -1,23 +1,47 @@
 package org.firstinspires.ftc.teamcode.telelib;
 
-import java.util.Arrays;
-import java.util.Locale;
-
 /**
- * Builds a snapshot by filling a fixed list of string values.
+ * Builds a snapshot by filling fixed typed columns (double, long, string).
  *
  * This is the "builder" you use each loop before sending data.
+ * Numbers are stored raw; they are only formatted when a client needs the text.
+ * The columns live in a pooled snapshot buffer, so the same builder is reused every loop.
+ * A set() after build() without begin() starts a fresh buffer, so a late put is not an
+ * error; it lands in the next snapshot that is built.
  */
 public class TelemetrySnapshotBuilder {
-    private final String[] values;
+    private final SnapshotPool pool;
+    private TelemetrySnapshot target;
 
     /**
      * Prepare a builder sized to the total field count in the schema.
      */
     public TelemetrySnapshotBuilder(int fieldCount) {
-        // Prepare a blank list of values for this loop.
-        values = new String[fieldCount];
-        Arrays.fill(values, "");
+        // Standalone builder: no spare buffers kept, ready to fill right away.
+        this(new SnapshotPool(fieldCount, 0));
+        begin();
+    }
+
+    TelemetrySnapshotBuilder(SnapshotPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Start filling a fresh blank buffer (drops anything not yet built).
+     */
+    public void begin() {
+        if (target != null) {
+            // The previous loop was never published; hand its buffer back.
+            target.release();
+        }
+        target = pool.acquire();
+    }
+
+    /**
+     * True between begin() (or a set() after build()) and build().
+     */
+    public boolean isActive() {
+        return target != null;
     }
 
     /**
@@ -25,26 +49,84 @@ public class TelemetrySnapshotBuilder {
      */
     public void set(int index, String value) {
         // Save a string value at a specific index.
-        values[index] = value == null ? "" : value;
+        TelemetrySnapshot snapshot = target();
+        snapshot.kinds[index] = TelemetrySnapshot.KIND_STRING;
+        snapshot.strings[index] = value == null ? "" : value;
     }
 
     /**
      * Set a numeric value at the given field index with formatting.
      */
     public void set(int index, double value, String format) {
-        // Save a number using a specific format (ex: "%.2f").
+        // Save a number plus the format to use later (ex: "%.2f").
+        TelemetrySnapshot snapshot = target();
+        if (Double.isNaN(value)) {
+            snapshot.kinds[index] = TelemetrySnapshot.KIND_EMPTY;
+            return;
+        }
+        // Reuse the compiled format when this field keeps the same format string.
+        NumericFormat compiled = snapshot.formats[index];
+        if (compiled == null
+                || (compiled.pattern() != format && !compiled.pattern().equals(format))) {
+            compiled = NumericFormat.compile(format);
+        }
+        snapshot.kinds[index] = TelemetrySnapshot.KIND_DOUBLE;
+        snapshot.doubles[index] = value;
+        snapshot.formats[index] = compiled;
+    }
+
+    /**
+     * Set a numeric value with an already compiled format (FieldHandle puts).
+     */
+    void set(int index, double value, NumericFormat format) {
+        TelemetrySnapshot snapshot = target();
         if (Double.isNaN(value)) {
-            values[index] = "";
+            snapshot.kinds[index] = TelemetrySnapshot.KIND_EMPTY;
             return;
         }
-        values[index] = String.format(Locale.US, format, value);
+        snapshot.kinds[index] = TelemetrySnapshot.KIND_DOUBLE;
+        snapshot.doubles[index] = value;
+        snapshot.formats[index] = format;
+    }
+
+    /**
+     * Set a long value at the given field index (timestamps, counters).
+     */
+    public void set(int index, long value) {
+        TelemetrySnapshot snapshot = target();
+        snapshot.kinds[index] = TelemetrySnapshot.KIND_LONG;
+        snapshot.longs[index] = value;
     }
 
     /**
      * Build an immutable snapshot from the current values.
+     *
+     * The caller now owns the snapshot's single reference; call begin() before the next set().
      */
     public TelemetrySnapshot build() {
-        // Turn the filled list into an immutable snapshot.
-        return new TelemetrySnapshot(values);
+        // Hand the filled buffer over; it must not change after this point.
+        TelemetrySnapshot snapshot = target;
+        target = null;
+        return snapshot;
+    }
+
+    /**
+     * Keep filling a built snapshot that the caller owns alone and has not published yet.
+     */
+    void reopen(TelemetrySnapshot snapshot) {
+        if (target != null) {
+            target.release();
+        }
+        target = snapshot;
+    }
+
+    private TelemetrySnapshot target() {
+        TelemetrySnapshot snapshot = target;
+        if (snapshot == null) {
+            // set() after build() without begin(): start a fresh buffer, like begin() would.
+            snapshot = pool.acquire();
+            target = snapshot;
+        }
+        return snapshot;
     }
 }
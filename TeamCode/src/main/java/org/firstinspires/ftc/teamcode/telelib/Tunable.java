@@ -0,0 +1,25 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Register this double field as a live-config value (SET name=value) through TelemetryBinder.
+ *
+ * The field must not be private or final; declare it volatile, since SET runs on the
+ * server thread.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Tunable {
+    /** Config name (default: the Java field name). */
+    String value() default "";
+
+    /** Smallest value SET accepts. */
+    double min();
+
+    /** Largest value SET accepts. */
+    double max();
+}
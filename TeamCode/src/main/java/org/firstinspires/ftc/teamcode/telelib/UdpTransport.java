@@ -0,0 +1,207 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional UDP fan-out ("udp_port" in the schema) for rooms with several viewers.
+ *
+ * Like a stadium PA instead of phone calls: every frame is encoded once and the same
+ * datagram goes to the multicast/broadcast group and to each peer that registered with
+ * "UDP port" over TCP, so robot cost does not grow with the number of laptops and a lossy
+ * link never holds anyone else back. Lost datagrams are simply gone; the datagram sequence
+ * lets receivers count them. FIELDS, LISTCFG, SET and friends stay on TCP. IO thread only.
+ *
+ * Datagram: "TLU1", u64 run id, u32 datagram sequence (+1 per datagram), then one binary
+ * DATA frame with every field (same layout as over TCP).
+ */
+final class UdpTransport implements AutoCloseable {
+    /** Default send rate of the UDP stream. */
+    static final int DEFAULT_RATE_HZ = 20;
+
+    private static final byte[] MAGIC = {'T', 'L', 'U', '1'};
+    // Largest UDP payload over IPv4; bigger frames are skipped and counted as dropped.
+    private static final int MAX_DATAGRAM_BYTES = 65_507;
+    // Multicast stays on the robot's own network.
+    private static final int MULTICAST_TTL = 1;
+
+    private final long runId;
+    private final TelemetryMetrics metrics;
+    private final int[] fields;
+    private final double[] quanta;
+    private final long intervalNanos;
+    private final FrameBuffer frame = new FrameBuffer(1024);
+    // Group target (owner null) first, then peers registered by TCP sessions.
+    private final List<InetSocketAddress> targets = new ArrayList<>();
+    private final List<ClientSession> owners = new ArrayList<>();
+    private DatagramChannel channel;
+    // Wraps frame.array(); replaced only when the frame buffer grows.
+    private ByteBuffer datagram = ByteBuffer.wrap(new byte[0]);
+    private long nextDueNanos;
+    // Newest snapshot sequence already sent.
+    private long lastSequence = -1;
+    private int datagramSequence;
+
+    /**
+     * UDP stream of every catalog field at rateHz, to group (may be null) and registered peers.
+     *
+     * Throws IllegalArgumentException when group is not a valid address.
+     */
+    UdpTransport(
+            long runId,
+            int port,
+            String group,
+            int rateHz,
+            int fieldCount,
+            double[] quanta,
+            TelemetryMetrics metrics) {
+        this.runId = runId;
+        this.metrics = metrics;
+        this.quanta = quanta;
+        this.intervalNanos = 1_000_000_000L / Math.max(1, rateHz);
+        this.fields = new int[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = i;
+        }
+        if (group != null && !group.isEmpty()) {
+            try {
+                targets.add(new InetSocketAddress(InetAddress.getByName(group), port));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Bad udp_group address: " + group, e);
+            }
+            owners.add(null);
+        }
+    }
+
+    /**
+     * Open the unbound, non-blocking send socket (IO thread, before the first send).
+     */
+    void open() throws IOException {
+        DatagramChannel opened = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            opened.configureBlocking(false);
+            // Needed for subnet broadcast addresses such as 192.168.43.255.
+            opened.setOption(StandardSocketOptions.SO_BROADCAST, true);
+            opened.setOption(StandardSocketOptions.IP_MULTICAST_TTL, MULTICAST_TTL);
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+        nextDueNanos = System.nanoTime();
+    }
+
+    /**
+     * True while the socket is open (false before open(), after it failed and after close()).
+     */
+    boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Send datagrams to the TCP client's address at udpPort until it disconnects or
+     * registers again (a session has at most one peer).
+     */
+    void addPeer(ClientSession owner, InetSocketAddress peer) {
+        removePeer(owner);
+        targets.add(peer);
+        owners.add(owner);
+    }
+
+    /**
+     * Stop sending to the peer a session registered (no-op when it has none).
+     */
+    void removePeer(ClientSession owner) {
+        for (int i = owners.size() - 1; i >= 0; i--) {
+            if (owners.get(i) == owner) {
+                owners.remove(i);
+                targets.remove(i);
+            }
+        }
+    }
+
+    /**
+     * True when the socket is open and there is anyone to send to.
+     */
+    boolean isActive() {
+        return channel != null && !targets.isEmpty();
+    }
+
+    boolean isDue(long nowNanos) {
+        return nowNanos - nextDueNanos >= 0;
+    }
+
+    long nextDueNanos() {
+        return nextDueNanos;
+    }
+
+    boolean hasNewData(long head) {
+        return head > lastSequence;
+    }
+
+    /**
+     * Encode the snapshot once and send it to every target (call only when isDue and
+     * hasNewData). Sends that fail or find the socket buffer full count as dropped.
+     */
+    void send(TelemetrySnapshot snapshot, long nowNanos) {
+        // Same drift-free stepping as the TCP sessions.
+        nextDueNanos += intervalNanos;
+        if (nowNanos - nextDueNanos >= 0) {
+            nextDueNanos = nowNanos + intervalNanos;
+        }
+        lastSequence = snapshot.sequence();
+        long encodeStart = System.nanoTime();
+        frame.clear();
+        for (byte b : MAGIC) {
+            frame.appendByte(b);
+        }
+        frame.appendLong(runId);
+        frame.appendInt(datagramSequence++);
+        BinaryFrames.writeData(frame, snapshot, fields, quanta);
+        metrics.encode.record(System.nanoTime() - encodeStart);
+        int size = frame.size();
+        if (size > MAX_DATAGRAM_BYTES) {
+            // Too big for one datagram; receivers see the sequence gap.
+            metrics.udpDropped.add(targets.size());
+            return;
+        }
+        if (datagram.array() != frame.array()) {
+            datagram = ByteBuffer.wrap(frame.array());
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            datagram.limit(size).position(0);
+            try {
+                if (channel.send(datagram, targets.get(i)) == 0) {
+                    metrics.udpDropped.increment();
+                    continue;
+                }
+            } catch (IOException e) {
+                // Network down or peer unreachable: this datagram is lost for this target.
+                metrics.udpDropped.increment();
+                continue;
+            }
+            metrics.udpDatagrams.increment();
+            metrics.udpBytes.add(size);
+        }
+    }
+
+    @Override
+    public void close() {
+        DatagramChannel current = channel;
+        channel = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.firstinspires.ftc.teamcode.telelib;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Per-session min/max/mean of the samples published between two frames.
+ *
+ * A 20 Hz client on a 250 Hz loop would otherwise see only every 12th sample and miss
+ * the current spike in between. Before each frame the session folds every sample since
+ * its previous frame (taken from the SnapshotRing) into primitive accumulators, and
+ * sends one snapshot holding the aggregates instead of the latest values. A field left out
+ * of a frame (max_rate_hz, shedding) keeps accumulating, so its next frame covers every
+ * sample since it was last sent.
+ *
+ * Only used from the TelemetryServer IO thread.
+ */
+final class WindowAggregator {
+    // Aggregation modes ("SUB name:max ..."); MODE_LAST sends the latest value as usual.
+    static final byte MODE_LAST = 0;
+    static final byte MODE_MIN = 1;
+    static final byte MODE_MAX = 2;
+    static final byte MODE_MEAN = 3;
+
+    // Mode per catalog field; one mode per field (the last one given in SUB wins).
+    private final byte[] modes;
+    // Catalog indexes with a mode other than MODE_LAST.
+    private final int[] aggregated;
+    // Accumulators for the current window, indexed like the catalog.
+    private final int[] counts;
+    private final boolean[] allLong;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final long[] longMin;
+    private final long[] longMax;
+    private final NumericFormat[] formats;
+    // Reused output: latest values with the aggregated slots overwritten.
+    private final TelemetrySnapshot result;
+
+    WindowAggregator(byte[] modes) {
+        int fieldCount = modes.length;
+        this.modes = modes;
+        int n = 0;
+        int[] indexes = new int[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            if (modes[i] != MODE_LAST) {
+                indexes[n++] = i;
+            }
+        }
+        this.aggregated = Arrays.copyOf(indexes, n);
+        this.counts = new int[fieldCount];
+        this.allLong = new boolean[fieldCount];
+        this.min = new double[fieldCount];
+        this.max = new double[fieldCount];
+        this.sum = new double[fieldCount];
+        this.longMin = new long[fieldCount];
+        this.longMax = new long[fieldCount];
+        this.formats = new NumericFormat[fieldCount];
+        this.result = TelemetrySnapshot.empty(fieldCount);
+    }
+
+    /**
+     * Parse an aggregation suffix ("min", "max", "mean", "last"); -1 when unknown.
+     */
+    static byte parseMode(String text) {
+        switch (text.toLowerCase(Locale.US)) {
+            case "min":
+                return MODE_MIN;
+            case "max":
+                return MODE_MAX;
+            case "mean":
+            case "avg":
+                return MODE_MEAN;
+            case "last":
+                return MODE_LAST;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Add the samples after lastSequence up to and including latest, and close the window
+     * of every aggregated field in sendFields (-1 entries are left out and keep theirs).
+     *
+     * The returned snapshot is stamped like latest and is only valid until the next call.
+     * Samples that already fell out of the ring (more than sample_buffer since the previous
+     * frame) are not part of the window.
+     */
+    TelemetrySnapshot fold(
+            SnapshotRing ring, long lastSequence, TelemetrySnapshot latest, int[] sendFields) {
+        long newest = latest.sequence();
+        long from = Math.max(lastSequence + 1, ring.oldest());
+        for (long seq = from; seq < newest; seq++) {
+            TelemetrySnapshot sample = ring.acquire(seq);
+            if (sample == null) {
+                continue;
+            }
+            try {
+                add(sample);
+            } finally {
+                sample.release();
+            }
+        }
+        add(latest);
+        // Start from the latest values, then overwrite the aggregated slots.
+        for (int i = 0; i < result.size(); i++) {
+            result.copyValue(i, latest);
+        }
+        for (int field : sendFields) {
+            if (field >= 0 && modes[field] != MODE_LAST && counts[field] > 0) {
+                store(field);
+                // This field's window went out; the next one starts empty.
+                counts[field] = 0;
+            }
+        }
+        result.stamp(newest, latest.timestampUs());
+        return result;
+    }
+
+    private void add(TelemetrySnapshot sample) {
+        for (int field : aggregated) {
+            double value;
+            boolean isLong;
+            switch (sample.kind(field)) {
+                case TelemetrySnapshot.KIND_DOUBLE:
+                    value = sample.getDouble(field);
+                    isLong = false;
+                    formats[field] = sample.getFormat(field);
+                    break;
+                case TelemetrySnapshot.KIND_LONG:
+                    value = sample.getLong(field);
+                    isLong = true;
+                    break;
+                default:
+                    // Strings and empty slots have nothing to aggregate.
+                    continue;
+            }
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            long longValue = sample.getLong(field);
+            if (counts[field] == 0) {
+                min[field] = value;
+                max[field] = value;
+                sum[field] = value;
+                allLong[field] = isLong;
+                longMin[field] = longValue;
+                longMax[field] = longValue;
+            } else {
+                min[field] = Math.min(min[field], value);
+                max[field] = Math.max(max[field], value);
+                sum[field] += value;
+                allLong[field] &= isLong;
+                if (isLong) {
+                    longMin[field] = Math.min(longMin[field], longValue);
+                    longMax[field] = Math.max(longMax[field], longValue);
+                }
+            }
+            counts[field]++;
+        }
+    }
+
+    private void store(int field) {
+        double mean = sum[field] / counts[field];
+        if (allLong[field]) {
+            // Long fields stay longs (exact min/max, mean rounded to the nearest whole).
+            long value;
+            switch (modes[field]) {
+                case MODE_MIN:
+                    value = longMin[field];
+                    break;
+                case MODE_MAX:
+                    value = longMax[field];
+                    break;
+                default:
+                    value = Math.round(mean);
+                    break;
+            }
+            result.kinds[field] = TelemetrySnapshot.KIND_LONG;
+            result.longs[field] = value;
+            return;
+        }
+        double value;
+        switch (modes[field]) {
+            case MODE_MIN:
+                value = min[field];
+                break;
+            case MODE_MAX:
+                value = max[field];
+                break;
+            default:
+                value = mean;
+                break;
+        }
+        result.kinds[field] = TelemetrySnapshot.KIND_DOUBLE;
+        result.doubles[field] = value;
+        result.formats[field] = formats[field];
+    }
+}